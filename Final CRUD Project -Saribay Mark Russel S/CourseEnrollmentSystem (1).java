@@ -1,11 +1,59 @@
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
+import javax.swing.plaf.LayerUI;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.beans.PropertyChangeEvent;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 public class CourseEnrollmentSystem extends JFrame {
     // Colors & fonts for a modern look
@@ -16,7 +64,7 @@ public class CourseEnrollmentSystem extends JFrame {
     private final Font font = new Font("Segoe UI", Font.PLAIN, 14);
 
     // Sidebar buttons
-    private JButton btnStudents, btnCourses, btnEnrollments;
+    private JButton btnStudents, btnCourses, btnEnrollments, btnReports, btnDiagnostics;
 
     // Main content panel with CardLayout
     private JPanel mainPanel;
@@ -26,6 +74,8 @@ public class CourseEnrollmentSystem extends JFrame {
     private StudentPanel studentPanel;
     private CoursePanel coursePanel;
     private EnrollmentPanel enrollmentPanel;
+    private ReportsPanel reportsPanel;
+    private DiagnosticsPanel diagnosticsPanel;
 
     public CourseEnrollmentSystem() {
         setTitle("Course Enrollment System");
@@ -43,21 +93,16 @@ public class CourseEnrollmentSystem extends JFrame {
         mainPanel = new JPanel(cardLayout);
         mainPanel.setBackground(mainBg);
 
-        // Create panels for each module
-        studentPanel = new StudentPanel();
-        coursePanel = new CoursePanel();
-        enrollmentPanel = new EnrollmentPanel();
-
-        mainPanel.add(studentPanel, "STUDENTS");
-        mainPanel.add(coursePanel, "COURSES");
-        mainPanel.add(enrollmentPanel, "ENROLLMENTS");
+        // Module panels are created on first use; meanwhile their first pages are fetched in parallel
+        Startup.warmUp();
 
         add(mainPanel, BorderLayout.CENTER);
 
-        // Show student panel by default
-        cardLayout.show(mainPanel, "STUDENTS");
-
         setVisible(true);
+        Startup.windowShown();
+
+        // Show student panel by default
+        switchPanel("STUDENTS");
     }
 
     private JPanel createSidebar() {
@@ -78,15 +123,21 @@ public class CourseEnrollmentSystem extends JFrame {
         btnStudents = createSidebarButton("Students");
         btnCourses = createSidebarButton("Courses");
         btnEnrollments = createSidebarButton("Enrollments");
+        btnReports = createSidebarButton("Reports");
+        btnDiagnostics = createSidebarButton("Diagnostics");
 
         // Add action listeners
         btnStudents.addActionListener(e -> switchPanel("STUDENTS"));
         btnCourses.addActionListener(e -> switchPanel("COURSES"));
         btnEnrollments.addActionListener(e -> switchPanel("ENROLLMENTS"));
+        btnReports.addActionListener(e -> switchPanel("REPORTS"));
+        btnDiagnostics.addActionListener(e -> switchPanel("DIAGNOSTICS"));
 
         sidebar.add(btnStudents);
         sidebar.add(btnCourses);
         sidebar.add(btnEnrollments);
+        sidebar.add(btnReports);
+        sidebar.add(btnDiagnostics);
 
         // Space filler
         sidebar.add(Box.createVerticalGlue());
@@ -133,6 +184,10 @@ public class CourseEnrollmentSystem extends JFrame {
     }
 
     private void switchPanel(String panelName) {
+        PanelSwitchEvent event = new PanelSwitchEvent();
+        event.begin();
+        event.panel = panelName;
+        ensurePanel(panelName);
         cardLayout.show(mainPanel, panelName);
 
         // Reset button highlights
@@ -143,6 +198,27 @@ public class CourseEnrollmentSystem extends JFrame {
             case "STUDENTS" -> highlightButton(btnStudents);
             case "COURSES" -> highlightButton(btnCourses);
             case "ENROLLMENTS" -> highlightButton(btnEnrollments);
+            case "REPORTS" -> highlightButton(btnReports);
+            case "DIAGNOSTICS" -> highlightButton(btnDiagnostics);
+        }
+
+        // Ends after the events queued by the switch, i.e. once the new card has been laid out and painted
+        SwingUtilities.invokeLater(event::commit);
+    }
+
+    // Builds a module panel the first time it is shown
+    private void ensurePanel(String panelName) {
+        JPanel created = null;
+        switch (panelName) {
+            case "STUDENTS" -> { if (studentPanel == null) created = studentPanel = new StudentPanel(); }
+            case "COURSES" -> { if (coursePanel == null) created = coursePanel = new CoursePanel(); }
+            case "ENROLLMENTS" -> { if (enrollmentPanel == null) created = enrollmentPanel = new EnrollmentPanel(); }
+            case "REPORTS" -> { if (reportsPanel == null) created = reportsPanel = new ReportsPanel(); }
+            case "DIAGNOSTICS" -> { if (diagnosticsPanel == null) created = diagnosticsPanel = new DiagnosticsPanel(); }
+        }
+        if (created != null) {
+            mainPanel.add(created, panelName);
+            mainPanel.revalidate();
         }
     }
 
@@ -150,21 +226,358 @@ public class CourseEnrollmentSystem extends JFrame {
         btnStudents.setBackground(sidebarBg);
         btnCourses.setBackground(sidebarBg);
         btnEnrollments.setBackground(sidebarBg);
+        btnReports.setBackground(sidebarBg);
+        btnDiagnostics.setBackground(sidebarBg);
     }
 
     private void highlightButton(JButton btn) {
         btn.setBackground(sidebarHover);
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        SchemaMigrator.migrateOnStartup();
+        DeletionJobs.resumePending();
+        EdtMonitor.install();
         SwingUtilities.invokeLater(CourseEnrollmentSystem::new);
     }
 
+    // --------- STARTUP ---------
+    // Measures time to first interactive: from JVM start until the first page of the visible table is on screen
+    static class Startup {
+        private static final Logger LOG = Logger.getLogger(Startup.class.getName());
+        private static final AtomicBoolean interactive = new AtomicBoolean();
+
+        // Everything a panel needs on first show, fetched in parallel on the data-access threads
+        static void warmUp() {
+            PagedTableModel.prefetch(new StudentPanel.StudentPages());
+            PagedTableModel.prefetch(new CoursePanel.CoursePages());
+            PagedTableModel.prefetch(new EnrollmentPanel.EnrollmentPages());
+        }
+
+        static void windowShown() {
+            LOG.info("Window shown " + uptime() + " ms after JVM start");
+        }
+
+        static void firstPageShown(String table) {
+            if (interactive.compareAndSet(false, true)) {
+                LOG.info("Interactive " + uptime() + " ms after JVM start (first page of " + table + " shown)");
+            }
+        }
+
+        private static long uptime() {
+            return ManagementFactory.getRuntimeMXBean().getUptime();
+        }
+    }
+
+    // --------- SCHEMA MIGRATIONS ---------
+    // Brings any database, from an empty one to an import of the original course_enrollment.sql dump, to
+    // the schema this code expects. Applied versions are recorded in schema_version. Every step checks
+    // information_schema before changing anything, so a database that already has part of a change is fine.
+    static class SchemaMigrator {
+        private static final Logger LOG = Logger.getLogger(SchemaMigrator.class.getName());
+        private static final boolean ENABLED = !Boolean.getBoolean("ce.schema.skipMigrations");
+        private static final int LOCK_TIMEOUT_SEC = 30;
+
+        interface Step {
+            void apply(Connection conn) throws SQLException;
+        }
+
+        private static class Migration {
+            final int version;
+            final String description;
+            final Step step;
+
+            Migration(int version, String description, Step step) {
+                this.version = version;
+                this.description = description;
+                this.step = step;
+            }
+        }
+
+        // Append only: a released migration is never edited, a new version is added instead
+        private static final Migration[] MIGRATIONS = {
+                new Migration(1, "Tables of the original dump", SchemaMigrator::createTables),
+                new Migration(2, "courses.instructor, written by the course panel", conn ->
+                        addColumn(conn, "courses", "instructor", "VARCHAR(255) NOT NULL DEFAULT '' AFTER course_name")),
+                // Words under 3 characters and InnoDB's stopwords are not indexed; nameSearch matches those without the index
+                new Migration(3, "FULLTEXT indexes for the name searches", conn -> {
+                    addIndex(conn, "students", "ft_student_names", "FULLTEXT KEY ft_student_names (first_name, last_name, middle_name)");
+                    addIndex(conn, "courses", "ft_course_name", "FULLTEXT KEY ft_course_name (course_name)");
+                }),
+                new Migration(4, "Course capacity, seat counter and waitlist", SchemaMigrator::addCapacity),
+                new Migration(5, "Covering indexes and change-detection columns", SchemaMigrator::addCoveringIndexes),
+                new Migration(6, "Enrollment counters for the reports panel", SchemaMigrator::addEnrollmentStats),
+                new Migration(7, "Progress of chunked student and course deletes", conn -> {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("CREATE TABLE IF NOT EXISTS deletion_jobs (id INT(11) NOT NULL AUTO_INCREMENT, " +
+                                "target VARCHAR(10) NOT NULL, target_id INT(11) NOT NULL, total INT(11) NOT NULL, removed INT(11) NOT NULL DEFAULT 0, " +
+                                "state VARCHAR(10) NOT NULL DEFAULT 'running', created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                                "updated_at TIMESTAMP NULL DEFAULT NULL, PRIMARY KEY (id), KEY state (state, target, target_id)) " +
+                                "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+                    }
+                }),
+                new Migration(8, "Academic terms and the enrollment archive", SchemaMigrator::addTerms)
+        };
+        static final int CURRENT_VERSION = MIGRATIONS[MIGRATIONS.length - 1].version;
+
+        // Runs before the window opens, so no panel queries an outdated schema
+        static void migrateOnStartup() {
+            if (!ENABLED) return;
+            try (Connection conn = connectDB()) {
+                migrate(conn);
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Schema migration failed", e);
+                JOptionPane.showMessageDialog(null, "Could not update the database schema: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+
+        // Returns the number of migrations applied
+        static int migrate(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL PRIMARY KEY, " +
+                        "description VARCHAR(255) NOT NULL, applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, duration_ms INT NOT NULL)");
+            }
+            // Clients starting together: one migrates, the others wait for it and then find nothing to do
+            lock(conn);
+            try {
+                int version = currentVersion(conn);
+                if (version > CURRENT_VERSION) {
+                    LOG.warning("Database schema is at version " + version + ", newer than this program's " + CURRENT_VERSION);
+                }
+                int applied = 0;
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version <= version) continue;
+                    long start = System.nanoTime();
+                    migration.step.apply(conn);
+                    long millis = (System.nanoTime() - start) / 1_000_000;
+                    try (PreparedStatement ps = conn.prepareStatement("INSERT INTO schema_version (version, description, duration_ms) VALUES (?, ?, ?)")) {
+                        ps.setInt(1, migration.version);
+                        ps.setString(2, migration.description);
+                        ps.setLong(3, millis);
+                        ps.executeUpdate();
+                    }
+                    LOG.info("Migrated schema to version " + migration.version + " (" + migration.description + ") in " + millis + " ms");
+                    applied++;
+                }
+                return applied;
+            } finally {
+                unlock(conn);
+            }
+        }
+
+        private static int currentVersion(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+
+        private static void createTables(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS students (id INT(11) NOT NULL AUTO_INCREMENT, student_id VARCHAR(50) NOT NULL, " +
+                        "first_name VARCHAR(100) NOT NULL, last_name VARCHAR(100) NOT NULL, middle_name VARCHAR(100) DEFAULT NULL, " +
+                        "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (id), UNIQUE KEY student_id (student_id)) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS courses (id INT(11) NOT NULL AUTO_INCREMENT, course_code VARCHAR(50) NOT NULL, " +
+                        "course_name VARCHAR(255) NOT NULL, course_description TEXT DEFAULT NULL, " +
+                        "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (id), UNIQUE KEY course_code (course_code)) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS enrollments (id INT(11) NOT NULL AUTO_INCREMENT, student_id INT(11) NOT NULL, " +
+                        "course_id INT(11) NOT NULL, enrollment_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (id), " +
+                        "UNIQUE KEY student_id (student_id, course_id), KEY course_id (course_id), " +
+                        "CONSTRAINT enrollments_ibfk_1 FOREIGN KEY (student_id) REFERENCES students (id) ON DELETE CASCADE, " +
+                        "CONSTRAINT enrollments_ibfk_2 FOREIGN KEY (course_id) REFERENCES courses (id) ON DELETE CASCADE) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+            }
+        }
+
+        private static void addCapacity(Connection conn) throws SQLException {
+            addColumn(conn, "courses", "capacity", "INT(11) DEFAULT NULL");
+            boolean counted = !addColumn(conn, "courses", "seats_taken", "INT(11) NOT NULL DEFAULT 0 AFTER capacity");
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS waitlist (id INT(11) NOT NULL AUTO_INCREMENT, student_id INT(11) NOT NULL, " +
+                        "course_id INT(11) NOT NULL, created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (id), " +
+                        "UNIQUE KEY student_id (student_id, course_id), KEY course_id (course_id, id), " +
+                        "CONSTRAINT waitlist_ibfk_1 FOREIGN KEY (student_id) REFERENCES students (id) ON DELETE CASCADE, " +
+                        "CONSTRAINT waitlist_ibfk_2 FOREIGN KEY (course_id) REFERENCES courses (id) ON DELETE CASCADE) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+                // Existing enrollments occupy seats from the start
+                if (!counted) stmt.executeUpdate("UPDATE courses c SET seats_taken = (SELECT COUNT(*) FROM enrollments e WHERE e.course_id = c.id)");
+            }
+        }
+
+        // Chosen from EXPLAIN of the statements the app issues (see explain below):
+        // - roster reads (enrollment graph, COUNT(*) by course, cascades from course deletes) were index
+        //   lookups plus a row read each; (course_id, student_id) answers them from the index and also serves
+        //   the course_id foreign key, so the single-column index it supersedes goes
+        // - waitlist promotion reads the oldest entry of a course with its student; adding student_id to the
+        //   (course_id, id) index makes that covering too
+        // - EntityCache's change check reads MAX(updated_at), which the app sets when it edits a student or
+        //   course (not on every row update, or each seat taken would drop the cached courses); indexed, so
+        //   that is one lookup instead of a full scan
+        private static void addCoveringIndexes(Connection conn) throws SQLException {
+            addIndex(conn, "enrollments", "course_student", "KEY course_student (course_id, student_id)");
+            dropIndex(conn, "enrollments", "course_id");
+            addIndex(conn, "waitlist", "course_queue", "KEY course_queue (course_id, id, student_id)");
+            dropIndex(conn, "waitlist", "course_id");
+            for (String table : new String[]{"students", "courses"}) {
+                addColumn(conn, table, "updated_at", "TIMESTAMP(6) NULL DEFAULT NULL");
+                addIndex(conn, table, "updated_at", "KEY updated_at (updated_at)");
+            }
+        }
+
+        // Counted from the existing enrollments once, in 16 slots per day; Enrollments keeps the counts
+        // current from then on. Like every step, this is SQL as of its own version, not a call into app code.
+        // The term column stays empty until addTerms puts the enrollments in terms and counts them again.
+        private static void addEnrollmentStats(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS enrollment_daily (term VARCHAR(20) NOT NULL DEFAULT '', day DATE NOT NULL, " +
+                        "slot TINYINT NOT NULL, enrolled INT(11) NOT NULL DEFAULT 0, PRIMARY KEY (term, day, slot)) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+                stmt.executeUpdate("DELETE FROM enrollment_daily");
+                stmt.executeUpdate("INSERT INTO enrollment_daily (day, slot, enrolled) " +
+                        "SELECT DATE(enrollment_date), MOD(course_id, 16), COUNT(*) FROM enrollments GROUP BY 1, 2");
+            }
+            addIndex(conn, "courses", "seats_taken", "KEY seats_taken (seats_taken)");
+        }
+
+        // Existing enrollments are put in half-year terms by their date (2025-1 for January to June, 2025-2
+        // for July to December), and the term of today's date becomes the active one. The live table keeps
+        // its foreign keys, which InnoDB does not allow on partitioned tables; it stays small by archiving
+        // instead. Duplicate checks are per term, so a student can take a course again in a later term.
+        // The backfill only touches rows without a term, so a rerun after a partial failure completes it.
+        private static void addTerms(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS terms (code VARCHAR(20) NOT NULL, state VARCHAR(10) NOT NULL DEFAULT 'closed', " +
+                        "started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (code)) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci");
+                addColumn(conn, "enrollments", "term", "VARCHAR(20) NOT NULL AFTER course_id");
+                stmt.executeUpdate("UPDATE enrollments SET term = " + halfYear("enrollment_date") + " WHERE term = ''");
+                stmt.executeUpdate("INSERT IGNORE INTO terms (code, started_at) SELECT term, MIN(enrollment_date) FROM enrollments GROUP BY term");
+                try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM terms WHERE state = 'active'")) {
+                    if (!rs.next()) {
+                        stmt.executeUpdate("INSERT INTO terms (code, state) VALUES (" + halfYear("CURRENT_DATE") + ", 'active') " +
+                                "ON DUPLICATE KEY UPDATE state = 'active'");
+                    }
+                }
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS enrollments_archive (id INT(11) NOT NULL, term VARCHAR(20) NOT NULL, " +
+                        "student_id INT(11) NOT NULL, student_code VARCHAR(50) NOT NULL, student_name VARCHAR(255) NOT NULL, " +
+                        "course_id INT(11) NOT NULL, course_code VARCHAR(50) NOT NULL, course_name VARCHAR(255) NOT NULL, " +
+                        "enrollment_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (term, id), KEY student_code (student_code), KEY course_code (course_code)) " +
+                        "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci PARTITION BY KEY (term) PARTITIONS 8");
+            }
+            addIndex(conn, "enrollments", "student_course_term", "UNIQUE KEY student_course_term (student_id, course_id, term)");
+            dropIndex(conn, "enrollments", "student_id");
+            addIndex(conn, "enrollments", "term", "KEY term (term)");
+            // Only the active term's enrollments hold seats or clear waitlist entries
+            String active = "(SELECT code FROM terms WHERE state = 'active' ORDER BY started_at DESC LIMIT 1)";
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE courses c SET seats_taken = (SELECT COUNT(*) FROM enrollments e " +
+                        "WHERE e.course_id = c.id AND e.term = " + active + ")");
+                stmt.executeUpdate("DELETE w FROM waitlist w JOIN enrollments e ON e.student_id = w.student_id " +
+                        "AND e.course_id = w.course_id AND e.term = " + active);
+                // The reports describe the active term, so the daily counters are counted again by term
+                stmt.executeUpdate("DELETE FROM enrollment_daily");
+                stmt.executeUpdate("INSERT INTO enrollment_daily (term, day, slot, enrolled) " +
+                        "SELECT term, DATE(enrollment_date), MOD(course_id, 16), COUNT(*) FROM enrollments GROUP BY 1, 2, 3");
+            }
+        }
+
+        private static String halfYear(String date) {
+            return "CONCAT(YEAR(" + date + "), '-', IF(MONTH(" + date + ") <= 6, 1, 2))";
+        }
+
+        // Each returns whether it changed anything
+        private static boolean addColumn(Connection conn, String table, String column, String definition) throws SQLException {
+            if (exists(conn, "SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?", table, column)) return false;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+            }
+            return true;
+        }
+
+        private static boolean addIndex(Connection conn, String table, String index, String definition) throws SQLException {
+            if (indexExists(conn, table, index)) return false;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE " + table + " ADD " + definition);
+            }
+            return true;
+        }
+
+        private static boolean dropIndex(Connection conn, String table, String index) throws SQLException {
+            if (!indexExists(conn, table, index)) return false;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE " + table + " DROP INDEX " + index);
+            }
+            return true;
+        }
+
+        private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+            return exists(conn, "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?", table, index);
+        }
+
+        private static boolean exists(Connection conn, String sql, String table, String name) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, table);
+                ps.setString(2, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        }
+
+        private static void lock(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('course_enrollment.schema', " + LOCK_TIMEOUT_SEC + ")")) {
+                if (!rs.next() || rs.getInt(1) != 1) throw new SQLException("Timed out waiting for another client to migrate the schema");
+            }
+        }
+
+        private static void unlock(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeQuery("SELECT RELEASE_LOCK('course_enrollment.schema')").close();
+            }
+        }
+
+        // EXPLAIN of every statement the app has run so far, with the parameters of its first execution.
+        // Full scans, temporary tables and filesorts are flagged; those are where an index could help.
+        static String explain(Connection conn, List<QueryMetrics.Stats> statements) {
+            StringBuilder report = new StringBuilder();
+            for (QueryMetrics.Stats stats : statements) {
+                String sql = stats.getSql();
+                String verb = sql.split("\\s+", 2)[0].toUpperCase();
+                if (!verb.equals("SELECT") && !verb.equals("UPDATE") && !verb.equals("DELETE")) continue;
+                report.append(stats.getName()).append('\n').append("  ").append(sql).append('\n');
+                try (PreparedStatement ps = conn.prepareStatement("EXPLAIN " + sql)) {
+                    Map<Integer, Object> binds = stats.getSampleBinds();
+                    for (Map.Entry<Integer, Object> bind : binds.entrySet()) ps.setObject(bind.getKey(), bind.getValue());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            String type = rs.getString("type"), extra = rs.getString("Extra");
+                            boolean flagged = "ALL".equals(type) || (extra != null && (extra.contains("filesort") || extra.contains("temporary")));
+                            report.append(flagged ? "! " : "  ").append(String.format("table=%s type=%s key=%s rows=%s extra=%s",
+                                    rs.getString("table"), type, rs.getString("key"), rs.getString("rows"), extra)).append('\n');
+                        }
+                    }
+                } catch (SQLException e) {
+                    report.append("  EXPLAIN failed: ").append(e.getMessage()).append('\n');
+                }
+                report.append('\n');
+            }
+            return report.toString();
+        }
+    }
+
     // --------- STUDENT PANEL ---------
     static class StudentPanel extends JPanel {
         private JTextField txtStudentId, txtFirstName, txtLastName, txtMiddleName, txtSearch;
         private JTable table;
-        private DefaultTableModel model;
+        private PagedTableModel model;
+        private SearchPipeline search;
+        private final StudentPages pages = new StudentPages();
+        private final LoadingUI loading = new LoadingUI();
         private final Color primaryColor = new Color(59, 130, 246);
         private final Font font = new Font("Segoe UI", Font.PLAIN, 14);
 
@@ -188,6 +601,9 @@ public class CourseEnrollmentSystem extends JFrame {
             lblSearch.setFont(font.deriveFont(Font.BOLD));
             searchPanel.add(lblSearch, BorderLayout.WEST);
             searchPanel.add(txtSearch, BorderLayout.CENTER);
+            JButton btnImport = createButton("Import");
+            btnImport.setToolTipText("Import students from a CSV file with columns student_id, first_name, last_name, middle_name");
+            searchPanel.add(btnImport, BorderLayout.EAST);
             add(searchPanel, BorderLayout.SOUTH);
 
             // Split center panel: left form, right table
@@ -250,20 +666,21 @@ public class CourseEnrollmentSystem extends JFrame {
             centerPanel.add(leftPanel, BorderLayout.WEST);
 
             // Table setup
-            model = new DefaultTableModel(new String[]{"DB ID", "Student ID", "First Name", "Last Name", "Middle Name"}, 0) {
-                @Override
-                public boolean isCellEditable(int row, int column) {
-                    return false; // make table non-editable directly
-                }
-            };
+            model = new PagedTableModel(new String[]{"DB ID", "Student ID", "First Name", "Last Name", "Middle Name"}, pages, loading,
+                    e -> JOptionPane.showMessageDialog(this, "Error loading students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
             table = new JTable(model);
             styleTable(table);
 
             JScrollPane tableScroll = new JScrollPane(table);
-            centerPanel.add(tableScroll, BorderLayout.CENTER);
+            centerPanel.add(new JLayer<>(tableScroll, loading), BorderLayout.CENTER);
 
             add(centerPanel, BorderLayout.CENTER);
 
+            // Debounced search over the student columns
+            search = new SearchPipeline(txtSearch, model, loading, StudentPanel::prepareSearch, StudentPanel::readStudents,
+                    (r, query) -> matchesSearch(r, query, 1, 2, 3, 4), model::setRows, model::reload,
+                    e -> JOptionPane.showMessageDialog(this, "Error searching students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+
             // Load students
             loadStudents();
 
@@ -271,41 +688,25 @@ public class CourseEnrollmentSystem extends JFrame {
             btnAdd.addActionListener(e -> addStudent());
             btnUpdate.addActionListener(e -> updateStudent());
             btnDelete.addActionListener(e -> deleteStudent());
+            btnImport.addActionListener(e -> CsvImporter.importFile(this, "students", new StudentImport(), () -> {
+                EntityCache.STUDENTS.invalidate();
+                ReadRouting.wrote(model);
+                loadStudents();
+            }));
 
             table.getSelectionModel().addListSelectionListener(e -> fillFormFromTable());
-
-            txtSearch.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-                public void changedUpdate(javax.swing.event.DocumentEvent e) { filterTable(); }
-                public void removeUpdate(javax.swing.event.DocumentEvent e) { filterTable(); }
-                public void insertUpdate(javax.swing.event.DocumentEvent e) { filterTable(); }
-            });
         }
 
-        private void filterTable() {
-            String query = txtSearch.getText().toLowerCase().trim();
-            model.setRowCount(0);
-            String sql = "SELECT * FROM students WHERE " +
-                    "LOWER(student_id) LIKE ? OR LOWER(first_name) LIKE ? OR LOWER(last_name) LIKE ? OR LOWER(middle_name) LIKE ?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                String likeQuery = "%" + query + "%";
-                for (int i = 1; i <= 4; i++) {
-                    ps.setString(i, likeQuery);
-                }
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        model.addRow(new Object[]{
-                                rs.getInt("id"),
-                                rs.getString("student_id"),
-                                rs.getString("first_name"),
-                                rs.getString("last_name"),
-                                rs.getString("middle_name")
-                        });
-                    }
-                }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error searching students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+        // Student ID prefix hits rank first (exact match on top), then name hits by relevance
+        static PreparedStatement prepareSearch(Connection conn, String query) throws SQLException {
+            List<String> params = new ArrayList<>(List.of(query, likePrefix(query)));
+            String idHits = "SELECT s.*, IF(student_id = ?, 0, 1) AS tier, 0 AS score FROM students s WHERE student_id LIKE ?";
+            String nameHits = nameSearch("students", "s", query, params, "first_name", "last_name", "middle_name");
+            String sql = "SELECT * FROM (" + idHits + (nameHits == null ? "" : " UNION ALL " + nameHits) + ") hits " +
+                    "ORDER BY tier, score DESC, student_id";
+            PreparedStatement ps = conn.prepareStatement(sql);
+            for (int i = 0; i < params.size(); i++) ps.setString(i + 1, params.get(i));
+            return ps;
         }
 
         private JLabel createLabel(String text) {
@@ -346,7 +747,7 @@ public class CourseEnrollmentSystem extends JFrame {
 
         private void fillFormFromTable() {
             int row = table.getSelectedRow();
-            if (row < 0) return;
+            if (row < 0 || model.getRow(row) == null) return;
 
             txtStudentId.setText(model.getValueAt(row, 1).toString());
             txtFirstName.setText(model.getValueAt(row, 2).toString());
@@ -354,23 +755,98 @@ public class CourseEnrollmentSystem extends JFrame {
             txtMiddleName.setText(model.getValueAt(row, 4).toString());
         }
 
+        // Shows the paged listing, or re-runs the current search when the search box is not empty
         private void loadStudents() {
-            model.setRowCount(0);
-            String sql = "SELECT * FROM students ORDER BY student_id";
-            try (Connection conn = connectDB();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    model.addRow(new Object[]{
-                            rs.getInt("id"),
-                            rs.getString("student_id"),
-                            rs.getString("first_name"),
-                            rs.getString("last_name"),
-                            rs.getString("middle_name")
-                    });
+            search.refresh();
+        }
+
+        // Runs on the data-access thread
+        static List<Object[]> readStudents(ResultSet rs) throws SQLException {
+            List<Object[]> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(new Object[]{
+                        rs.getInt("id"),
+                        rs.getString("student_id"),
+                        rs.getString("first_name"),
+                        rs.getString("last_name"),
+                        rs.getString("middle_name")
+                });
+            }
+            return rows;
+        }
+
+        // CSV rows: student_id, first_name, last_name, middle_name
+        private static class StudentImport implements CsvImporter.InsertTarget {
+            private final Set<String> knownIds = new HashSet<>();
+
+            @Override
+            public String[] columns() {
+                return new String[]{"student_id", "first_name", "last_name", "middle_name"};
+            }
+
+            @Override
+            public String insertSql() {
+                return "INSERT INTO students (student_id, first_name, last_name, middle_name) VALUES (?, ?, ?, ?)";
+            }
+
+            @Override
+            public void begin(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT student_id FROM students")) {
+                    while (rs.next()) knownIds.add(rs.getString(1).toLowerCase());
+                }
+            }
+
+            @Override
+            public Object[] convert(String[] record) {
+                String sid = CsvImporter.required(record[0], "student_id", 50);
+                String fname = CsvImporter.required(record[1], "first_name", 100);
+                String lname = CsvImporter.required(record[2], "last_name", 100);
+                String mname = CsvImporter.optional(record[3], "middle_name", 100);
+                if (!knownIds.add(sid.toLowerCase())) throw new IllegalArgumentException("Duplicate student_id " + sid);
+                return new Object[]{sid, fname, lname, mname};
+            }
+        }
+
+        // Keyset pages ordered by the unique student_id
+        static class StudentPages implements PagedTableModel.PageSource {
+            @Override
+            public int count(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM students")) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+
+            @Override
+            public List<Object[]> page(Connection conn, Object[] after, int offset, int limit) throws SQLException {
+                String sql = after == null
+                        ? "SELECT * FROM students ORDER BY student_id LIMIT ? OFFSET ?"
+                        : "SELECT * FROM students WHERE student_id > ? ORDER BY student_id LIMIT ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    if (after == null) {
+                        ps.setInt(1, limit);
+                        ps.setInt(2, offset);
+                    } else {
+                        ps.setString(1, (String) after[1]);
+                        ps.setInt(2, limit);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        List<Object[]> rows = readStudents(rs);
+                        EntityCache.STUDENTS.putAll(rows);
+                        return rows;
+                    }
+                }
+            }
+
+            @Override
+            public int position(Connection conn, Object[] row) throws SQLException {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM students WHERE student_id < ?")) {
+                    ps.setString(1, (String) row[1]);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
                 }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error loading students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
 
@@ -386,19 +862,27 @@ public class CourseEnrollmentSystem extends JFrame {
             }
 
             String sql = "INSERT INTO students (student_id, first_name, last_name, middle_name) VALUES (?, ?, ?, ?)";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, sid);
-                ps.setString(2, fname);
-                ps.setString(3, lname);
-                ps.setString(4, mname.isEmpty() ? null : mname);
-                ps.executeUpdate();
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB();
+                     PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, sid);
+                    ps.setString(2, fname);
+                    ps.setString(3, lname);
+                    ps.setString(4, mname.isEmpty() ? null : mname);
+                    ps.executeUpdate();
+                    Object[] added = {generatedKey(ps), sid, fname, lname, mname.isEmpty() ? null : mname};
+                    EntityCache.STUDENTS.put(added);
+                    EntityCache.STUDENTS.acknowledge(conn);
+                    ReadRouting.wrote(model);
+                    return new PagedTableModel.RowChange(added, pages.position(conn, added));
+                }
+            }, change -> {
                 JOptionPane.showMessageDialog(this, "Student added successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 clearForm();
-                loadStudents();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error adding student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                if (search.isFiltering()) search.refresh();
+                else model.insertRow(change.position, change.row);
+                DataEvents.publish(DataEvents.Entity.STUDENT, null, change.row);
+            }, e -> JOptionPane.showMessageDialog(this, "Error adding student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
 
         private void updateStudent() {
@@ -408,6 +892,7 @@ public class CourseEnrollmentSystem extends JFrame {
                 return;
             }
             int dbId = (int) model.getValueAt(row, 0);
+            Object[] before = model.getRow(row);
 
             String sid = txtStudentId.getText().trim();
             String fname = txtFirstName.getText().trim();
@@ -419,20 +904,40 @@ public class CourseEnrollmentSystem extends JFrame {
                 return;
             }
 
-            String sql = "UPDATE students SET student_id=?, first_name=?, last_name=?, middle_name=? WHERE id=?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, sid);
-                ps.setString(2, fname);
-                ps.setString(3, lname);
-                ps.setString(4, mname.isEmpty() ? null : mname);
-                ps.setInt(5, dbId);
-                ps.executeUpdate();
+            String sql = "UPDATE students SET student_id=?, first_name=?, last_name=?, middle_name=?, updated_at=CURRENT_TIMESTAMP(6) WHERE id=?";
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB();
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, sid);
+                    ps.setString(2, fname);
+                    ps.setString(3, lname);
+                    ps.setString(4, mname.isEmpty() ? null : mname);
+                    ps.setInt(5, dbId);
+                    ps.executeUpdate();
+                    Object[] updated = {dbId, sid, fname, lname, mname.isEmpty() ? null : mname};
+                    EntityCache.STUDENTS.put(updated);
+                    EntityCache.STUDENTS.acknowledge(conn);
+                    ReadRouting.wrote(model);
+                    return new PagedTableModel.RowChange(updated, pages.position(conn, updated));
+                }
+            }, change -> {
                 JOptionPane.showMessageDialog(this, "Student updated successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 clearForm();
+                applyUpdate(row, before, change);
+                DataEvents.publish(DataEvents.Entity.STUDENT, before, change.row);
+            }, e -> JOptionPane.showMessageDialog(this, "Error updating student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        // Patches the row in place, or moves it when its student_id (the sort key) changed
+        private void applyUpdate(int index, Object[] before, PagedTableModel.RowChange change) {
+            if (!model.hasIdAt(index, (int) change.row[0])) {
                 loadStudents();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error updating student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            } else if (!model.isPaged() || before[1].equals(change.row[1])) {
+                model.updateRow(index, change.row);
+                search.forget();
+            } else {
+                model.deleteRow(index);
+                model.insertRow(change.position, change.row);
             }
         }
 
@@ -443,21 +948,23 @@ public class CourseEnrollmentSystem extends JFrame {
                 return;
             }
             int dbId = (int) model.getValueAt(row, 0);
+            Object[] before = model.getRow(row);
 
             int confirm = JOptionPane.showConfirmDialog(this, "Are you sure to delete the selected student?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
             if (confirm != JOptionPane.YES_OPTION) return;
 
-            String sql = "DELETE FROM students WHERE id=?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, dbId);
-                ps.executeUpdate();
+            DeletionJobs.start(this, DeletionJobs.Target.STUDENT, dbId, count -> {
+                ReadRouting.wrote(model);
                 JOptionPane.showMessageDialog(this, "Student deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 clearForm();
-                loadStudents();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error deleting student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                if (model.hasIdAt(row, dbId)) {
+                    model.deleteRow(row);
+                    search.forget();
+                } else {
+                    loadStudents();
+                }
+                DataEvents.publish(DataEvents.Entity.STUDENT, before, null);
+            }, e -> JOptionPane.showMessageDialog(this, "Error deleting student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
 
         private void clearForm() {
@@ -467,21 +974,16 @@ public class CourseEnrollmentSystem extends JFrame {
             txtMiddleName.setText("");
             table.clearSelection();
         }
-
-        // Database connection method
-        private Connection connectDB() throws SQLException {
-        	  String url = "jdbc:mysql://localhost:3306/course_enrollment";
-              String user = "root";
-              String pass = "";
-            return DriverManager.getConnection(url, user, pass);
-        }
     }
 
     // --------- COURSE PANEL ---------
     static class CoursePanel extends JPanel {
-        private JTextField txtCourseCode, txtCourseName, txtInstructor, txtSearch;
+        private JTextField txtCourseCode, txtCourseName, txtInstructor, txtCapacity, txtSearch;
         private JTable table;
-        private DefaultTableModel model;
+        private PagedTableModel model;
+        private SearchPipeline search;
+        private final CoursePages pages = new CoursePages();
+        private final LoadingUI loading = new LoadingUI();
         private final Color primaryColor = new Color(59, 130, 246);
         private final Font font = new Font("Segoe UI", Font.PLAIN, 14);
 
@@ -505,6 +1007,9 @@ public class CourseEnrollmentSystem extends JFrame {
             lblSearch.setFont(font.deriveFont(Font.BOLD));
             searchPanel.add(lblSearch, BorderLayout.WEST);
             searchPanel.add(txtSearch, BorderLayout.CENTER);
+            JButton btnImport = createButton("Import");
+            btnImport.setToolTipText("Import courses from a CSV file with columns course_code, course_name, instructor");
+            searchPanel.add(btnImport, BorderLayout.EAST);
             add(searchPanel, BorderLayout.SOUTH);
 
             JPanel centerPanel = new JPanel(new BorderLayout(15, 15));
@@ -519,6 +1024,8 @@ public class CourseEnrollmentSystem extends JFrame {
             txtCourseCode = new JTextField();
             txtCourseName = new JTextField();
             txtInstructor = new JTextField();
+            txtCapacity = new JTextField();
+            txtCapacity.setToolTipText("Leave blank for unlimited seats");
 
             int row = 0;
             gbc.gridx = 0; gbc.gridy = row;
@@ -538,6 +1045,12 @@ public class CourseEnrollmentSystem extends JFrame {
             gbc.gridx = 1;
             formPanel.add(txtInstructor, gbc);
 
+            row++;
+            gbc.gridx = 0; gbc.gridy = row;
+            formPanel.add(createLabel("Capacity:"), gbc);
+            gbc.gridx = 1;
+            formPanel.add(txtCapacity, gbc);
+
             JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 10));
             btnPanel.setBackground(Color.WHITE);
             JButton btnAdd = createButton("Add");
@@ -555,57 +1068,55 @@ public class CourseEnrollmentSystem extends JFrame {
 
             centerPanel.add(leftPanel, BorderLayout.WEST);
 
-            model = new DefaultTableModel(new String[]{"ID", "Course Code", "Course Name", "Instructor"}, 0) {
-                @Override
-                public boolean isCellEditable(int row, int column) {
-                    return false;
-                }
-            };
+            model = new PagedTableModel(new String[]{"ID", "Course Code", "Course Name", "Instructor", "Capacity", "Seats Taken"}, pages, loading,
+                    e -> JOptionPane.showMessageDialog(this, "Error loading courses: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
             table = new JTable(model);
             styleTable(table);
 
             JScrollPane scrollPane = new JScrollPane(table);
-            centerPanel.add(scrollPane, BorderLayout.CENTER);
+            centerPanel.add(new JLayer<>(scrollPane, loading), BorderLayout.CENTER);
 
             add(centerPanel, BorderLayout.CENTER);
 
+            search = new SearchPipeline(txtSearch, model, loading, CoursePanel::prepareSearch, CoursePanel::readCourses,
+                    (r, query) -> matchesSearch(r, query, 1, 2), model::setRows, model::reload,
+                    e -> JOptionPane.showMessageDialog(this, "Error searching courses: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+
             loadCourses();
 
             btnAdd.addActionListener(e -> addCourse());
             btnUpdate.addActionListener(e -> updateCourse());
             btnDelete.addActionListener(e -> deleteCourse());
+            btnImport.addActionListener(e -> CsvImporter.importFile(this, "courses", new CourseImport(), () -> {
+                EntityCache.COURSES.invalidate();
+                ReadRouting.wrote(model);
+                loadCourses();
+            }));
 
             table.getSelectionModel().addListSelectionListener(e -> fillFormFromTable());
 
-            txtSearch.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-                public void changedUpdate(javax.swing.event.DocumentEvent e) { filterTable(); }
-                public void removeUpdate(javax.swing.event.DocumentEvent e) { filterTable(); }
-                public void insertUpdate(javax.swing.event.DocumentEvent e) { filterTable(); }
+            // Seats change with every enrollment, so the listing is refreshed whenever it is shown again
+            addComponentListener(new ComponentAdapter() {
+                private boolean shown;
+
+                @Override
+                public void componentShown(ComponentEvent e) {
+                    if (shown) loadCourses();
+                    shown = true;
+                }
             });
         }
 
-        private void filterTable() {
-            String query = txtSearch.getText().toLowerCase().trim();
-            model.setRowCount(0);
-            String sql = "SELECT * FROM courses WHERE LOWER(course_code) LIKE ? OR LOWER(course_name) LIKE ?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                String likeQuery = "%" + query + "%";
-                ps.setString(1, likeQuery);
-                ps.setString(2, likeQuery);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        model.addRow(new Object[]{
-                                rs.getInt("id"),
-                                rs.getString("course_code"),
-                                rs.getString("course_name"),
-                                rs.getString("instructor")
-                        });
-                    }
-                }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error searching courses: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+        // Course code prefix hits rank first (exact match on top), then name hits by relevance
+        private static PreparedStatement prepareSearch(Connection conn, String query) throws SQLException {
+            List<String> params = new ArrayList<>(List.of(query, likePrefix(query)));
+            String codeHits = "SELECT c.*, IF(course_code = ?, 0, 1) AS tier, 0 AS score FROM courses c WHERE course_code LIKE ?";
+            String nameHits = nameSearch("courses", "c", query, params, "course_name");
+            String sql = "SELECT * FROM (" + codeHits + (nameHits == null ? "" : " UNION ALL " + nameHits) + ") hits " +
+                    "ORDER BY tier, score DESC, course_code";
+            PreparedStatement ps = conn.prepareStatement(sql);
+            for (int i = 0; i < params.size(); i++) ps.setString(i + 1, params.get(i));
+            return ps;
         }
 
         private JLabel createLabel(String text) {
@@ -646,29 +1157,107 @@ public class CourseEnrollmentSystem extends JFrame {
 
         private void fillFormFromTable() {
             int row = table.getSelectedRow();
-            if (row < 0) return;
+            if (row < 0 || model.getRow(row) == null) return;
 
             txtCourseCode.setText(model.getValueAt(row, 1).toString());
             txtCourseName.setText(model.getValueAt(row, 2).toString());
             txtInstructor.setText(model.getValueAt(row, 3).toString());
+            Object capacity = model.getValueAt(row, 4);
+            txtCapacity.setText(capacity == null ? "" : capacity.toString());
         }
 
+        // Shows the paged listing, or re-runs the current search when the search box is not empty
         private void loadCourses() {
-            model.setRowCount(0);
-            String sql = "SELECT * FROM courses ORDER BY course_code";
-            try (Connection conn = connectDB();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    model.addRow(new Object[]{
-                            rs.getInt("id"),
-                            rs.getString("course_code"),
-                            rs.getString("course_name"),
-                            rs.getString("instructor")
-                    });
+            search.refresh();
+        }
+
+        // Runs on the data-access thread
+        private static List<Object[]> readCourses(ResultSet rs) throws SQLException {
+            List<Object[]> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(new Object[]{
+                        rs.getInt("id"),
+                        rs.getString("course_code"),
+                        rs.getString("course_name"),
+                        rs.getString("instructor"),
+                        rs.getObject("capacity", Integer.class),
+                        rs.getInt("seats_taken")
+                });
+            }
+            return rows;
+        }
+
+        // CSV rows: course_code, course_name, instructor
+        private static class CourseImport implements CsvImporter.InsertTarget {
+            private final Set<String> knownCodes = new HashSet<>();
+
+            @Override
+            public String[] columns() {
+                return new String[]{"course_code", "course_name", "instructor"};
+            }
+
+            @Override
+            public String insertSql() {
+                return "INSERT INTO courses (course_code, course_name, instructor) VALUES (?, ?, ?)";
+            }
+
+            @Override
+            public void begin(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT course_code FROM courses")) {
+                    while (rs.next()) knownCodes.add(rs.getString(1).toLowerCase());
+                }
+            }
+
+            @Override
+            public Object[] convert(String[] record) {
+                String code = CsvImporter.required(record[0], "course_code", 50);
+                String name = CsvImporter.required(record[1], "course_name", 255);
+                String instructor = CsvImporter.required(record[2], "instructor", 255);
+                if (!knownCodes.add(code.toLowerCase())) throw new IllegalArgumentException("Duplicate course_code " + code);
+                return new Object[]{code, name, instructor};
+            }
+        }
+
+        // Keyset pages ordered by the unique course_code
+        private static class CoursePages implements PagedTableModel.PageSource {
+            @Override
+            public int count(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM courses")) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+
+            @Override
+            public List<Object[]> page(Connection conn, Object[] after, int offset, int limit) throws SQLException {
+                String sql = after == null
+                        ? "SELECT * FROM courses ORDER BY course_code LIMIT ? OFFSET ?"
+                        : "SELECT * FROM courses WHERE course_code > ? ORDER BY course_code LIMIT ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    if (after == null) {
+                        ps.setInt(1, limit);
+                        ps.setInt(2, offset);
+                    } else {
+                        ps.setString(1, (String) after[1]);
+                        ps.setInt(2, limit);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        List<Object[]> rows = readCourses(rs);
+                        EntityCache.COURSES.putAll(rows);
+                        return rows;
+                    }
+                }
+            }
+
+            @Override
+            public int position(Connection conn, Object[] row) throws SQLException {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM courses WHERE course_code < ?")) {
+                    ps.setString(1, (String) row[1]);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
                 }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error loading courses: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
 
@@ -681,20 +1270,31 @@ public class CourseEnrollmentSystem extends JFrame {
                 JOptionPane.showMessageDialog(this, "Course Code, Name, and Instructor are required.", "Warning", JOptionPane.WARNING_MESSAGE);
                 return;
             }
-
-            String sql = "INSERT INTO courses (course_code, course_name, instructor) VALUES (?, ?, ?)";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, code);
-                ps.setString(2, name);
-                ps.setString(3, instructor);
-                ps.executeUpdate();
+            Integer capacity = readCapacity();
+            if (capacity != null && capacity < 0) return;
+
+            String sql = "INSERT INTO courses (course_code, course_name, instructor, capacity) VALUES (?, ?, ?, ?)";
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB();
+                     PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, code);
+                    ps.setString(2, name);
+                    ps.setString(3, instructor);
+                    ps.setObject(4, capacity, Types.INTEGER);
+                    ps.executeUpdate();
+                    Object[] added = {generatedKey(ps), code, name, instructor, capacity, 0};
+                    EntityCache.COURSES.put(added);
+                    EntityCache.COURSES.acknowledge(conn);
+                    ReadRouting.wrote(model);
+                    return new PagedTableModel.RowChange(added, pages.position(conn, added));
+                }
+            }, change -> {
                 JOptionPane.showMessageDialog(this, "Course added successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 clearForm();
-                loadCourses();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error adding course: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                if (search.isFiltering()) search.refresh();
+                else model.insertRow(change.position, change.row);
+                DataEvents.publish(DataEvents.Entity.COURSE, null, change.row);
+            }, e -> JOptionPane.showMessageDialog(this, "Error adding course: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
 
         private void updateCourse() {
@@ -704,6 +1304,7 @@ public class CourseEnrollmentSystem extends JFrame {
                 return;
             }
             int dbId = (int) model.getValueAt(row, 0);
+            Object[] before = model.getRow(row);
 
             String code = txtCourseCode.getText().trim();
             String name = txtCourseName.getText().trim();
@@ -713,20 +1314,82 @@ public class CourseEnrollmentSystem extends JFrame {
                 JOptionPane.showMessageDialog(this, "Course Code, Name, and Instructor are required.", "Warning", JOptionPane.WARNING_MESSAGE);
                 return;
             }
-
-            String sql = "UPDATE courses SET course_code=?, course_name=?, instructor=? WHERE id=?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, code);
-                ps.setString(2, name);
-                ps.setString(3, instructor);
-                ps.setInt(4, dbId);
-                ps.executeUpdate();
+            Integer capacity = readCapacity();
+            if (capacity != null && capacity < 0) return;
+
+            String sql = "UPDATE courses SET course_code=?, course_name=?, instructor=?, capacity=?, updated_at=CURRENT_TIMESTAMP(6) WHERE id=?";
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB();
+                     PreparedStatement ps = conn.prepareStatement(sql)) {
+                    // A raised capacity admits waitlisted students in the same transaction
+                    conn.setAutoCommit(false);
+                    try {
+                        ps.setString(1, code);
+                        ps.setString(2, name);
+                        ps.setString(3, instructor);
+                        ps.setObject(4, capacity, Types.INTEGER);
+                        ps.setInt(5, dbId);
+                        ps.executeUpdate();
+                        if (Enrollments.promoteWaitlisted(conn, dbId) > 0) {
+                            conn.commit();
+                            EnrollmentGraph.INSTANCE.coursesChanged(conn, Collections.singleton(dbId));
+                        } else {
+                            conn.commit();
+                        }
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                    Object[] updated = courseById(conn, dbId);
+                    EntityCache.COURSES.put(updated);
+                    EntityCache.COURSES.acknowledge(conn);
+                    ReadRouting.wrote(model);
+                    return new PagedTableModel.RowChange(updated, pages.position(conn, updated));
+                }
+            }, change -> {
                 JOptionPane.showMessageDialog(this, "Course updated successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 clearForm();
+                applyUpdate(row, before, change);
+                DataEvents.publish(DataEvents.Entity.COURSE, before, change.row);
+            }, e -> JOptionPane.showMessageDialog(this, "Error updating course: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        // Blank means unlimited; returns -1 after warning about an invalid number
+        private Integer readCapacity() {
+            String text = txtCapacity.getText().trim();
+            if (text.isEmpty()) return null;
+            try {
+                int capacity = Integer.parseInt(text);
+                if (capacity >= 0) return capacity;
+            } catch (NumberFormatException ignored) {
+            }
+            JOptionPane.showMessageDialog(this, "Capacity must be a whole number of seats, or blank for unlimited.", "Warning", JOptionPane.WARNING_MESSAGE);
+            return -1;
+        }
+
+        private static Object[] courseById(Connection conn, int id) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM courses WHERE id = ?")) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<Object[]> rows = readCourses(rs);
+                    if (rows.isEmpty()) throw new SQLException("Course " + id + " no longer exists");
+                    return rows.get(0);
+                }
+            }
+        }
+
+        // Patches the row in place, or moves it when its course_code (the sort key) changed
+        private void applyUpdate(int index, Object[] before, PagedTableModel.RowChange change) {
+            if (!model.hasIdAt(index, (int) change.row[0])) {
                 loadCourses();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error updating course: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            } else if (!model.isPaged() || before[1].equals(change.row[1])) {
+                model.updateRow(index, change.row);
+                search.forget();
+            } else {
+                model.deleteRow(index);
+                model.insertRow(change.position, change.row);
             }
         }
 
@@ -737,45 +1400,46 @@ public class CourseEnrollmentSystem extends JFrame {
                 return;
             }
             int dbId = (int) model.getValueAt(row, 0);
+            Object[] before = model.getRow(row);
 
             int confirm = JOptionPane.showConfirmDialog(this, "Are you sure to delete the selected course?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
             if (confirm != JOptionPane.YES_OPTION) return;
 
-            String sql = "DELETE FROM courses WHERE id=?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, dbId);
-                ps.executeUpdate();
+            DeletionJobs.start(this, DeletionJobs.Target.COURSE, dbId, count -> {
+                ReadRouting.wrote(model);
                 JOptionPane.showMessageDialog(this, "Course deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
                 clearForm();
-                loadCourses();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error deleting course: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                if (model.hasIdAt(row, dbId)) {
+                    model.deleteRow(row);
+                    search.forget();
+                } else {
+                    loadCourses();
+                }
+                DataEvents.publish(DataEvents.Entity.COURSE, before, null);
+            }, e -> JOptionPane.showMessageDialog(this, "Error deleting course: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
 
         private void clearForm() {
             txtCourseCode.setText("");
             txtCourseName.setText("");
             txtInstructor.setText("");
+            txtCapacity.setText("");
             table.clearSelection();
         }
-
-        // Database connection method
-        private Connection connectDB() throws SQLException {
-            String url = "jdbc:mysql://localhost:3306/course_enrollment";
-            String user = "root";
-            String pass = "";
-            return DriverManager.getConnection(url, user, pass);
-        }
     }
 
     // --------- ENROLLMENT PANEL ---------
     static class EnrollmentPanel extends JPanel {
-        private JComboBox<String> cbStudents, cbCourses;
+        private EntityPicker studentPicker, coursePicker;
+        private final JComboBox<String> cmbTerm = new JComboBox<>();
+        private String activeTerm;
+        private boolean listingTerms;
+        private final JLabel lblSummary = new JLabel(" ");
         private JButton btnEnroll, btnDeleteEnrollment;
         private JTable table;
-        private DefaultTableModel model;
+        private PagedTableModel model;
+        private final EnrollmentPages pages = new EnrollmentPages();
+        private final LoadingUI loading = new LoadingUI();
         private final Color primaryColor = new Color(59, 130, 246);
         private final Font font = new Font("Segoe UI", Font.PLAIN, 14);
 
@@ -792,41 +1456,86 @@ public class CourseEnrollmentSystem extends JFrame {
             JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 10));
             topPanel.setBackground(Color.WHITE);
 
-            cbStudents = new JComboBox<>();
-            cbCourses = new JComboBox<>();
+            studentPicker = EntityPicker.students();
+            coursePicker = EntityPicker.courses();
             btnEnroll = new JButton("Enroll");
             btnDeleteEnrollment = new JButton("Delete Enrollment");
 
             styleButton(btnEnroll);
             styleButton(btnDeleteEnrollment);
 
+            cmbTerm.setFont(font);
+            cmbTerm.setToolTipText("Term listed below; new enrollments always go to the active term");
+            cmbTerm.setRenderer(new DefaultListCellRenderer() {
+                @Override
+                public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                    Object label = value != null && value.equals(activeTerm) ? value + " (active)" : value;
+                    return super.getListCellRendererComponent(list, label, index, isSelected, cellHasFocus);
+                }
+            });
+            topPanel.add(new JLabel("Term:"));
+            topPanel.add(cmbTerm);
             topPanel.add(new JLabel("Student:"));
-            topPanel.add(cbStudents);
+            topPanel.add(studentPicker);
             topPanel.add(new JLabel("Course:"));
-            topPanel.add(cbCourses);
+            topPanel.add(coursePicker);
             topPanel.add(btnEnroll);
             topPanel.add(btnDeleteEnrollment);
+            lblSummary.setFont(font);
+            topPanel.add(lblSummary);
 
             add(topPanel, BorderLayout.NORTH);
 
-            model = new DefaultTableModel(new String[]{"Enrollment ID", "Student ID", "Student Name", "Course Code", "Course Name"}, 0) {
-                @Override
-                public boolean isCellEditable(int row, int column) {
-                    return false;
-                }
-            };
+            model = new PagedTableModel(new String[]{"Enrollment ID", "Student ID", "Student Name", "Course Code", "Course Name"}, pages, loading,
+                    e -> JOptionPane.showMessageDialog(this, "Error loading enrollments: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
             table = new JTable(model);
             styleTable(table);
 
             JScrollPane scrollPane = new JScrollPane(table);
-            add(scrollPane, BorderLayout.CENTER);
+            add(new JLayer<>(scrollPane, loading), BorderLayout.CENTER);
+
+            JPanel actionsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
+            actionsPanel.setBackground(Color.WHITE);
+            JButton btnImport = new JButton("Import CSV");
+            btnImport.setToolTipText("Import enrollments from a CSV file with columns student_id, course_code");
+            styleButton(btnImport);
+            JButton btnBulkEnroll = new JButton("Bulk Enroll");
+            btnBulkEnroll.setToolTipText("Enroll one student into several courses, or several students into one course");
+            styleButton(btnBulkEnroll);
+            JButton btnExport = new JButton("Export");
+            btnExport.setToolTipText("Export the listed term's enrollments, or every term's, as CSV or newline-delimited JSON, optionally gzipped");
+            styleButton(btnExport);
+            actionsPanel.add(btnBulkEnroll);
+            actionsPanel.add(btnImport);
+            actionsPanel.add(btnExport);
+            JButton btnTerms = new JButton("Terms");
+            btnTerms.setToolTipText("Start a new term, or archive a closed one");
+            styleButton(btnTerms);
+            JButton btnHistory = new JButton("History");
+            btnHistory.setToolTipText("Look up a student's or course's enrollments in every term, including archived ones");
+            styleButton(btnHistory);
+            actionsPanel.add(btnTerms);
+            actionsPanel.add(btnHistory);
+            add(actionsPanel, BorderLayout.SOUTH);
 
-            loadStudents();
-            loadCourses();
             loadEnrollments();
 
             btnEnroll.addActionListener(e -> enrollStudent());
             btnDeleteEnrollment.addActionListener(e -> deleteEnrollment());
+            btnImport.addActionListener(e -> CsvImporter.importFile(this, "enrollments", new EnrollmentImport(), () -> {
+                ReadRouting.wrote(model);
+                loadEnrollments();
+            }));
+            btnExport.addActionListener(e -> EnrollmentExporter.exportFile(this, (String) cmbTerm.getSelectedItem()));
+            btnBulkEnroll.addActionListener(e -> bulkEnroll());
+            studentPicker.addChoiceListener(choice -> updateSummary());
+            coursePicker.addChoiceListener(choice -> updateSummary());
+            loadTerms();
+            cmbTerm.addActionListener(e -> showTerm());
+            btnTerms.addActionListener(e -> manageTerms());
+            btnHistory.addActionListener(e -> searchHistory());
+
+            DataEvents.subscribe(this::onDataChanged);
         }
 
         private void styleButton(JButton btn) {
@@ -857,91 +1566,414 @@ public class CourseEnrollmentSystem extends JFrame {
             table.setSelectionForeground(Color.WHITE);
         }
 
-        private void loadStudents() {
-            cbStudents.removeAllItems();
-            String sql = "SELECT id, student_id, first_name, last_name FROM students ORDER BY student_id";
-            try (Connection conn = connectDB();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    String display = rs.getString("student_id") + " - " + rs.getString("first_name") + " " + rs.getString("last_name");
-                    cbStudents.addItem(display + ":" + rs.getInt("id"));  // Store ID after colon
+        private void loadEnrollments() {
+            model.reload();
+            updateSummary();
+        }
+
+        // Live terms for the listing, the active one first and selected unless another was chosen
+        private void loadTerms() {
+            DataAccess.submit(cmbTerm, null, () -> {
+                try (Connection conn = ReadRouting.connect(model)) {
+                    return Terms.list(conn);
                 }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error loading students: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }, terms -> {
+                String selected = pages.term;
+                listingTerms = true;
+                cmbTerm.removeAllItems();
+                for (String[] term : terms) {
+                    if (term[1].equals("active")) {
+                        activeTerm = term[0];
+                        cmbTerm.insertItemAt(term[0], 0);
+                    } else if (term[1].equals("closed")) {
+                        cmbTerm.addItem(term[0]);
+                    }
+                }
+                if (selected != null && ((DefaultComboBoxModel<String>) cmbTerm.getModel()).getIndexOf(selected) < 0) selected = null;
+                cmbTerm.setSelectedItem(selected != null ? selected : activeTerm);
+                listingTerms = false;
+                if (selected == null && pages.term != null) {
+                    pages.term = null;
+                    loadEnrollments();
+                }
+            }, e -> JOptionPane.showMessageDialog(this, "Error loading terms: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        private void showTerm() {
+            if (listingTerms) return;
+            String term = (String) cmbTerm.getSelectedItem();
+            String listed = term == null || term.equals(activeTerm) ? null : term;
+            if (Objects.equals(listed, pages.term)) return;
+            pages.term = listed;
+            loadEnrollments();
+        }
+
+        private void manageTerms() {
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB()) {
+                    return Terms.list(conn);
+                }
+            }, terms -> {
+                JList<String> list = new JList<>(terms.stream().map(t -> t[0] + " (" + t[1] + ")").toArray(String[]::new));
+                list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+                list.setVisibleRowCount(10);
+                String[] options = {"Start New Term", "Archive Selected", "Close"};
+                int choice = JOptionPane.showOptionDialog(this, new JScrollPane(list), "Terms", JOptionPane.DEFAULT_OPTION,
+                        JOptionPane.PLAIN_MESSAGE, null, options, options[2]);
+                if (choice == 0) {
+                    startTerm();
+                } else if (choice == 1) {
+                    int index = list.getSelectedIndex();
+                    if (index < 0 || !terms.get(index)[1].equals("closed")) {
+                        JOptionPane.showMessageDialog(this, "Select a closed term to archive.", "Warning", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        archiveTerm(terms.get(index)[0]);
+                    }
+                }
+            }, e -> JOptionPane.showMessageDialog(this, "Error loading terms: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        private void startTerm() {
+            String input = JOptionPane.showInputDialog(this, "Code of the new term, e.g. 2026-1.\n" +
+                    "The current term is closed, waitlists are cleared and seat counts start from zero.", "Start New Term", JOptionPane.QUESTION_MESSAGE);
+            if (input == null) return;
+            String code = input.trim();
+            if (code.isEmpty() || code.length() > 20) {
+                JOptionPane.showMessageDialog(this, "A term code has 1 to 20 characters.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
             }
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB()) {
+                    Terms.start(conn, code);
+                    ReadRouting.wrote(model);
+                    return null;
+                }
+            }, done -> {
+                JOptionPane.showMessageDialog(this, "Term " + code + " started.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                pages.term = null;
+                loadTerms();
+                loadEnrollments();
+            }, e -> JOptionPane.showMessageDialog(this, "Error starting term: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
 
-        private void loadCourses() {
-            cbCourses.removeAllItems();
-            String sql = "SELECT id, course_code, course_name FROM courses ORDER BY course_code";
-            try (Connection conn = connectDB();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    String display = rs.getString("course_code") + " - " + rs.getString("course_name");
-                    cbCourses.addItem(display + ":" + rs.getInt("id"));  // Store ID after colon
+        private void archiveTerm(String code) {
+            int confirm = JOptionPane.showConfirmDialog(this, "Move the enrollments of term " + code + " to the archive?\n" +
+                    "They remain available through History.", "Archive Term", JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) return;
+            ProgressMonitor monitor = new ProgressMonitor(this, "Archiving term " + code, "", 0, 1000);
+            monitor.setMillisToDecideToPopup(500);
+            DataAccess.submitJob(() -> Terms.archive(code, (moved, total) -> SwingUtilities.invokeLater(() -> {
+                monitor.setProgress((int) (moved * 1000L / Math.max(1, total)));
+                monitor.setNote(String.format("%,d of %,d enrollments moved", moved, total));
+            })), moved -> {
+                monitor.close();
+                ReadRouting.wrote(model);
+                JOptionPane.showMessageDialog(this, String.format("Archived %,d enrollments of term %s.", moved, code), "Success", JOptionPane.INFORMATION_MESSAGE);
+                loadTerms();
+            }, e -> {
+                monitor.close();
+                JOptionPane.showMessageDialog(this, "Error archiving term: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+
+        private void searchHistory() {
+            String input = JOptionPane.showInputDialog(this, "Student ID or course code to look up in every term, including archived ones:",
+                    "History", JOptionPane.QUESTION_MESSAGE);
+            if (input == null || input.isBlank()) return;
+            String code = input.trim();
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = ReadRouting.connect(model)) {
+                    return Terms.history(conn, code);
                 }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error loading courses: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }, rows -> {
+                if (rows.isEmpty()) {
+                    JOptionPane.showMessageDialog(this, "No enrollments found for " + code + ".", "History", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                DefaultTableModel history = new DefaultTableModel(new String[]{"Term", "Student ID", "Student Name", "Course Code", "Course Name", "Enrolled"}, 0) {
+                    @Override
+                    public boolean isCellEditable(int row, int column) {
+                        return false;
+                    }
+                };
+                for (Object[] row : rows) history.addRow(row);
+                JTable historyTable = new JTable(history);
+                styleTable(historyTable);
+                JScrollPane scroll = new JScrollPane(historyTable);
+                scroll.setPreferredSize(new Dimension(800, 400));
+                JOptionPane.showMessageDialog(this, scroll, "History of " + code, JOptionPane.PLAIN_MESSAGE);
+            }, e -> JOptionPane.showMessageDialog(this, "Error searching history: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        // Schedule and roster sizes of the picked student and course, from the in-memory enrollment graph
+        private void updateSummary() {
+            EntityPicker.Choice student = studentPicker.getSelected(), course = coursePicker.getSelected();
+            if (student == null && course == null) {
+                DataAccess.cancel(lblSummary);
+                lblSummary.setText(" ");
+                return;
             }
+            DataAccess.submit(lblSummary, null, () -> {
+                EnrollmentGraph graph = EnrollmentGraph.INSTANCE;
+                try (Connection conn = connectDB()) {
+                    graph.sync(conn);
+                }
+                List<String> parts = new ArrayList<>();
+                if (student != null) parts.add(student.code + ": " + graph.scheduleSize(student.id) + " course(s)");
+                if (course != null) parts.add(course.code + ": " + graph.rosterSize(course.id) + " student(s)");
+                if (student != null && course != null && graph.isEnrolled(student.id, course.id)) parts.add("already enrolled");
+                return String.join("   ", parts);
+            }, lblSummary::setText, e -> lblSummary.setText(" "));
         }
 
-        private void loadEnrollments() {
-            model.setRowCount(0);
-            String sql = "SELECT e.id AS enrollment_id, s.student_id, CONCAT(s.first_name, ' ', s.last_name) AS student_name, c.course_code, c.course_name " +
-                         "FROM enrollments e " +
-                         "JOIN students s ON e.student_id = s.id " +
-                         "JOIN courses c ON e.course_id = c.id " +
-                         "ORDER BY s.student_id, c.course_code";
-            try (Connection conn = connectDB();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                while (rs.next()) {
-                    model.addRow(new Object[]{
-                            rs.getInt("enrollment_id"),
-                            rs.getString("student_id"),
-                            rs.getString("student_name"),
-                            rs.getString("course_code"),
-                            rs.getString("course_name")
-                    });
+        // CSV rows: student_id, course_code, resolved to the students.id / courses.id foreign keys and
+        // enrolled in the active term through Enrollments.enrollAll, so seat limits hold: rows beyond a
+        // course's free seats go to its waitlist and are reported as rejects
+        private static class EnrollmentImport implements CsvImporter.ChunkTarget {
+            private final Map<String, Integer> studentIds = new HashMap<>();
+            private final Map<String, Integer> courseIds = new HashMap<>();
+            private final Set<Long> pairs = new HashSet<>();
+
+            @Override
+            public String[] columns() {
+                return new String[]{"student_id", "course_code"};
+            }
+
+            @Override
+            public void begin(Connection conn) throws SQLException {
+                for (Object[] r : EntityCache.STUDENTS.all(conn)) studentIds.put(((String) r[1]).toLowerCase(), (Integer) r[0]);
+                for (Object[] r : EntityCache.COURSES.all(conn)) courseIds.put(((String) r[1]).toLowerCase(), (Integer) r[0]);
+            }
+
+            @Override
+            public Object[] convert(String[] record) {
+                String sid = CsvImporter.required(record[0], "student_id", 50);
+                String code = CsvImporter.required(record[1], "course_code", 50);
+                Integer studentId = studentIds.get(sid.toLowerCase());
+                Integer courseId = courseIds.get(code.toLowerCase());
+                if (studentId == null) throw new IllegalArgumentException("Unknown student_id " + sid);
+                if (courseId == null) throw new IllegalArgumentException("Unknown course_code " + code);
+                if (!pairs.add(Enrollments.pairKey(studentId, courseId))) {
+                    throw new IllegalArgumentException("Duplicate enrollment of " + sid + " in " + code);
                 }
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error loading enrollments: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return new Object[]{studentId, courseId, sid, code};
+            }
+
+            @Override
+            public String[] write(Connection conn, List<Object[]> chunk) throws SQLException {
+                int[] students = new int[chunk.size()], courses = new int[chunk.size()], outcomes = new int[chunk.size()];
+                for (int i = 0; i < chunk.size(); i++) {
+                    students[i] = (Integer) chunk.get(i)[0];
+                    courses[i] = (Integer) chunk.get(i)[1];
+                }
+                Enrollments.enrollAll(conn, students, courses, outcomes);
+                String[] reasons = new String[chunk.size()];
+                for (int i = 0; i < chunk.size(); i++) {
+                    Object[] row = chunk.get(i);
+                    if (outcomes[i] == Enrollments.ALREADY_ENROLLED) {
+                        reasons[i] = row[2] + " is already enrolled in " + row[3];
+                    } else if (outcomes[i] == Enrollments.WAITLISTED) {
+                        reasons[i] = row[3] + " is full; " + row[2] + " was added to its waitlist instead";
+                    }
+                }
+                return reasons;
+            }
+        }
+
+        // Keyset pages of one term ordered by (student_id, course_code), which is unique per enrollment there
+        static class EnrollmentPages implements PagedTableModel.PageSource {
+            // Only the sort keys come from the join; names are resolved through the entity cache
+            private static final String SELECT = "SELECT e.id AS enrollment_id, e.student_id AS sid, e.course_id AS cid, s.student_id, c.course_code " +
+                                                 "FROM enrollments e " +
+                                                 "JOIN students s ON e.student_id = s.id " +
+                                                 "JOIN courses c ON e.course_id = c.id ";
+            private static final String ORDER = "ORDER BY s.student_id, c.course_code LIMIT ?";
+
+            // The term listed; null for the active one
+            private volatile String term;
+
+            private String term(Connection conn) throws SQLException {
+                String listed = term;
+                return listed != null ? listed : Terms.active(conn);
+            }
+
+            // Course code and name repeat on every enrollment of the course
+            @Override
+            public int[] repeatingColumns() {
+                return new int[]{3, 4};
+            }
+
+            @Override
+            public int count(Connection conn) throws SQLException {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM enrollments WHERE term = ?")) {
+                    ps.setString(1, term(conn));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            }
+
+            @Override
+            public List<Object[]> page(Connection conn, Object[] after, int offset, int limit) throws SQLException {
+                String sql = after == null
+                        ? SELECT + "WHERE e.term = ? " + ORDER + " OFFSET ?"
+                        : SELECT + "WHERE e.term = ? AND (s.student_id > ? OR (s.student_id = ? AND c.course_code > ?)) " + ORDER;
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, term(conn));
+                    if (after == null) {
+                        ps.setInt(2, limit);
+                        ps.setInt(3, offset);
+                    } else {
+                        ps.setString(2, (String) after[1]);
+                        ps.setString(3, (String) after[1]);
+                        ps.setString(4, (String) after[3]);
+                        ps.setInt(5, limit);
+                    }
+                    return readEnrollments(conn, ps);
+                }
+            }
+
+            @Override
+            public int position(Connection conn, Object[] row) throws SQLException {
+                String sql = "SELECT COUNT(*) FROM enrollments e " +
+                             "JOIN students s ON e.student_id = s.id " +
+                             "JOIN courses c ON e.course_id = c.id " +
+                             "WHERE e.term = ? AND (s.student_id < ? OR (s.student_id = ? AND c.course_code < ?))";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setString(1, term(conn));
+                    ps.setString(2, (String) row[1]);
+                    ps.setString(3, (String) row[1]);
+                    ps.setString(4, (String) row[3]);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+            }
+
+            Object[] byId(Connection conn, int enrollmentId) throws SQLException {
+                try (PreparedStatement ps = conn.prepareStatement(SELECT + "WHERE e.id = ?")) {
+                    ps.setInt(1, enrollmentId);
+                    List<Object[]> rows = readEnrollments(conn, ps);
+                    if (rows.isEmpty()) throw new SQLException("Enrollment " + enrollmentId + " no longer exists");
+                    return rows.get(0);
+                }
+            }
+
+            private static List<Object[]> readEnrollments(Connection conn, PreparedStatement ps) throws SQLException {
+                List<Object[]> rows = new ArrayList<>();
+                List<int[]> refs = new ArrayList<>();
+                Set<Integer> studentIds = new HashSet<>(), courseIds = new HashSet<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int sid = rs.getInt("sid"), cid = rs.getInt("cid");
+                        rows.add(new Object[]{rs.getInt("enrollment_id"), rs.getString("student_id"), null, rs.getString("course_code"), null});
+                        refs.add(new int[]{sid, cid});
+                        studentIds.add(sid);
+                        courseIds.add(cid);
+                    }
+                }
+                Map<Integer, Object[]> students = EntityCache.STUDENTS.getAll(conn, studentIds);
+                Map<Integer, Object[]> courses = EntityCache.COURSES.getAll(conn, courseIds);
+                for (int i = 0; i < rows.size(); i++) {
+                    Object[] student = students.get(refs.get(i)[0]);
+                    Object[] course = courses.get(refs.get(i)[1]);
+                    if (student != null) rows.get(i)[2] = student[2] + " " + student[3];
+                    if (course != null) rows.get(i)[4] = course[2];
+                }
+                return rows;
             }
         }
 
         private void enrollStudent() {
-            if (cbStudents.getSelectedItem() == null || cbCourses.getSelectedItem() == null) {
+            if (studentPicker.getSelected() == null || coursePicker.getSelected() == null) {
                 JOptionPane.showMessageDialog(this, "Select both a student and a course.", "Warning", JOptionPane.WARNING_MESSAGE);
                 return;
             }
 
-            int studentId = getIdFromComboItem(cbStudents.getSelectedItem().toString());
-            int courseId = getIdFromComboItem(cbCourses.getSelectedItem().toString());
+            int studentId = studentPicker.getSelected().id;
+            int courseId = coursePicker.getSelected().id;
 
-            String checkSql = "SELECT COUNT(*) FROM enrollments WHERE student_id = ? AND course_id = ?";
-            String insertSql = "INSERT INTO enrollments (student_id, course_id) VALUES (?, ?)";
-            try (Connection conn = connectDB();
-                 PreparedStatement checkPs = conn.prepareStatement(checkSql);
-                 PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
-                checkPs.setInt(1, studentId);
-                checkPs.setInt(2, courseId);
-                try (ResultSet rs = checkPs.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        JOptionPane.showMessageDialog(this, "Student is already enrolled in this course.", "Info", JOptionPane.INFORMATION_MESSAGE);
-                        return;
-                    }
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB()) {
+                    int enrollmentId = Enrollments.enroll(conn, studentId, courseId);
+                    ReadRouting.wrote(model);
+                    if (enrollmentId < 0) return new PagedTableModel.RowChange(null, enrollmentId);
+                    Object[] added = pages.byId(conn, enrollmentId);
+                    return new PagedTableModel.RowChange(added, pages.position(conn, added));
+                }
+            }, change -> {
+                if (change.position == Enrollments.ALREADY_ENROLLED) {
+                    JOptionPane.showMessageDialog(this, "Student is already enrolled in this course.", "Info", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                if (change.position == Enrollments.WAITLISTED) {
+                    JOptionPane.showMessageDialog(this, "The course is full. The student was added to its waitlist.", "Info", JOptionPane.INFORMATION_MESSAGE);
+                    return;
                 }
-
-                insertPs.setInt(1, studentId);
-                insertPs.setInt(2, courseId);
-                insertPs.executeUpdate();
                 JOptionPane.showMessageDialog(this, "Enrollment successful.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                loadEnrollments();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error enrolling student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                if (pages.term == null) model.insertRow(change.position, change.row); // else another term is listed
+                updateSummary();
+            }, e -> JOptionPane.showMessageDialog(this, "Error enrolling student: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        // Enrolls the selected student into several courses, or several students into the selected course
+        private void bulkEnroll() {
+            String[] options = {"One student, many courses", "Many students, one course"};
+            int mode = JOptionPane.showOptionDialog(this, "Choose how to enroll:", "Bulk Enroll", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (mode < 0) return;
+            boolean manyCourses = mode == 0;
+            EntityPicker.Choice single = (manyCourses ? studentPicker : coursePicker).getSelected();
+            if (single == null) {
+                JOptionPane.showMessageDialog(this, manyCourses ? "Select a student first." : "Select a course first.", "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
             }
+
+            // Each suggestion picked is added to the list; the picker is cleared for the next one
+            DefaultListModel<EntityPicker.Choice> items = new DefaultListModel<>();
+            EntityPicker picker = manyCourses ? EntityPicker.courses() : EntityPicker.students();
+            picker.addChoiceListener(choice -> {
+                if (choice == null) return;
+                boolean present = false;
+                for (int i = 0; i < items.size(); i++) {
+                    if (items.get(i).id == choice.id) present = true;
+                }
+                if (!present) items.addElement(choice);
+                SwingUtilities.invokeLater(picker::clear);
+            });
+            JList<EntityPicker.Choice> list = new JList<>(items);
+            list.setVisibleRowCount(12);
+            JButton btnRemove = new JButton("Remove");
+            btnRemove.addActionListener(e -> {
+                int[] selectedRows = list.getSelectedIndices();
+                for (int i = selectedRows.length - 1; i >= 0; i--) items.remove(selectedRows[i]);
+            });
+            JPanel top = new JPanel(new BorderLayout(5, 5));
+            top.add(new JLabel((manyCourses ? "Courses for " : "Students for ") + single), BorderLayout.NORTH);
+            top.add(picker, BorderLayout.CENTER);
+            JPanel chooser = new JPanel(new BorderLayout(5, 5));
+            chooser.add(top, BorderLayout.NORTH);
+            chooser.add(new JScrollPane(list), BorderLayout.CENTER);
+            chooser.add(btnRemove, BorderLayout.SOUTH);
+            if (JOptionPane.showConfirmDialog(this, chooser, "Bulk Enroll", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION
+                    || items.isEmpty()) return;
+
+            int singleId = single.id;
+            int[] ids = new int[items.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = items.get(i).id;
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB()) {
+                    int inserted = manyCourses
+                            ? Enrollments.enrollStudentInCourses(conn, singleId, ids)
+                            : Enrollments.enrollStudentsInCourse(conn, ids, singleId);
+                    ReadRouting.wrote(model);
+                    return inserted;
+                }
+            }, inserted -> {
+                JOptionPane.showMessageDialog(this, inserted + " enrollment(s) added, " + (ids.length - inserted)
+                        + " already enrolled or waitlisted because the course is full.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                loadEnrollments();
+            }, e -> JOptionPane.showMessageDialog(this, "Error enrolling: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
 
         private void deleteEnrollment() {
@@ -955,34 +1987,4390 @@ public class CourseEnrollmentSystem extends JFrame {
             int confirm = JOptionPane.showConfirmDialog(this, "Are you sure to delete the selected enrollment?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
             if (confirm != JOptionPane.YES_OPTION) return;
 
-            String sql = "DELETE FROM enrollments WHERE id=?";
-            try (Connection conn = connectDB();
-                 PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setInt(1, enrollmentId);
-                ps.executeUpdate();
-                JOptionPane.showMessageDialog(this, "Enrollment deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                loadEnrollments();
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(this, "Error deleting enrollment: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = connectDB()) {
+                    int promoted = Enrollments.unenroll(conn, enrollmentId);
+                    ReadRouting.wrote(model);
+                    return promoted;
+                }
+            }, promoted -> {
+                JOptionPane.showMessageDialog(this, promoted > 0 ? "Enrollment deleted. The next waitlisted student was enrolled in the freed seat."
+                        : "Enrollment deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                if (promoted <= 0 && model.hasIdAt(row, enrollmentId)) {
+                    model.deleteRow(row);
+                    updateSummary();
+                } else {
+                    loadEnrollments();
+                }
+            }, e -> JOptionPane.showMessageDialog(this, "Error deleting enrollment: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        // Keeps the pickers and the enrollment rows in step with changes made in the other panels.
+        // Name changes are patched into the loaded rows; deletes cascade to enrollments, so those reload.
+        // Both read from the primary for a while, as a replica may not have the change yet.
+        private void onDataChanged(DataEvents.Entity entity, Object[] before, Object[] after) {
+            Object[] current = after != null ? after : before;
+            ReadRouting.wrote(model);
+            ReadRouting.wrote(entity == DataEvents.Entity.STUDENT ? studentPicker : coursePicker);
+            if (entity == DataEvents.Entity.STUDENT) {
+                studentPicker.refresh((int) current[0], after == null ? null : EntityPicker.studentChoice(after));
+                if (before != null && after != null && before[1].equals(after[1])) {
+                    String name = after[2] + " " + after[3];
+                    model.patchRows(r -> before[1].equals(r[1]) && !name.equals(r[2]) ? new Object[]{r[0], r[1], name, r[3], r[4]} : null);
+                } else if (before != null) {
+                    loadEnrollments();
+                }
+            } else {
+                coursePicker.refresh((int) current[0], after == null ? null : EntityPicker.courseChoice(after));
+                if (before != null && after != null && !Objects.equals(before[5], after[5])) {
+                    loadEnrollments(); // a raised capacity promoted waitlisted students
+                } else if (before != null && after != null && before[1].equals(after[1])) {
+                    model.patchRows(r -> before[1].equals(r[3]) && !after[2].equals(r[4]) ? new Object[]{r[0], r[1], r[2], r[3], after[2]} : null);
+                } else if (before != null) {
+                    loadEnrollments();
+                }
             }
         }
+    }
 
-        private int getIdFromComboItem(String item) {
-            int colonIndex = item.lastIndexOf(':');
-            if (colonIndex >= 0) {
-                try {
-                    return Integer.parseInt(item.substring(colonIndex + 1));
-                } catch (NumberFormatException ignored) {}
+    // --------- REPORTS PANEL ---------
+    // Registrar aggregates from EnrollmentStats, reloaded each time the panel is shown
+    static class ReportsPanel extends JPanel {
+        private final DefaultTableModel courses = reportModel("Course Code", "Course Name", "Enrolled", "Capacity");
+        private final DefaultTableModel topCourses = reportModel("Course Code", "Course Name", "Enrolled", "Capacity");
+        private final DefaultTableModel days = reportModel("Day", "Enrollments");
+        private final JLabel lblSummary = new JLabel(" ");
+        private final LoadingUI loading = new LoadingUI();
+        private final Color primaryColor = new Color(59, 130, 246);
+        private final Font font = new Font("Segoe UI", Font.PLAIN, 14);
+
+        public ReportsPanel() {
+            setLayout(new BorderLayout(15, 15));
+            setBorder(new EmptyBorder(20, 20, 20, 20));
+            setBackground(Color.WHITE);
+
+            JLabel header = new JLabel("Reports");
+            header.setFont(new Font("Segoe UI", Font.BOLD, 24));
+            header.setForeground(primaryColor);
+            lblSummary.setFont(font);
+            JPanel top = new JPanel(new BorderLayout(10, 10));
+            top.setBackground(Color.WHITE);
+            top.add(header, BorderLayout.NORTH);
+            top.add(lblSummary, BorderLayout.CENTER);
+            add(top, BorderLayout.NORTH);
+
+            JPanel right = new JPanel(new GridLayout(2, 1, 15, 15));
+            right.setBackground(Color.WHITE);
+            right.add(titled("Top courses", topCourses));
+            right.add(titled("Enrollments per day", days));
+            JPanel tables = new JPanel(new GridLayout(1, 2, 15, 15));
+            tables.setBackground(Color.WHITE);
+            tables.add(titled("Headcount by course", courses));
+            tables.add(right);
+            add(new JLayer<>(tables, loading), BorderLayout.CENTER);
+
+            JButton btnRefresh = createButton("Refresh");
+            JPanel actions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+            actions.setBackground(Color.WHITE);
+            actions.add(btnRefresh);
+            add(actions, BorderLayout.SOUTH);
+
+            btnRefresh.addActionListener(e -> refresh());
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentShown(ComponentEvent e) {
+                    refresh();
+                }
+            });
+        }
+
+        private void refresh() {
+            DataAccess.submit(this, loading, () -> {
+                try (Connection conn = ReadRouting.connect(this)) {
+                    return EnrollmentStats.load(conn);
+                }
+            }, report -> {
+                lblSummary.setText(String.format("Term %s: %,d enrollments in %,d courses, %,d of them full", report.term,
+                        report.enrollments, report.enrolledCourses, report.fullCourses));
+                fill(courses, report.courses);
+                fill(topCourses, report.topCourses);
+                fill(days, report.days);
+            }, e -> JOptionPane.showMessageDialog(this, "Error loading reports: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        private static void fill(DefaultTableModel model, List<Object[]> rows) {
+            model.setRowCount(0);
+            for (Object[] row : rows) {
+                if (row.length == 4 && row[3] == null) row[3] = "Unlimited";
+                model.addRow(row);
+            }
+        }
+
+        private static DefaultTableModel reportModel(String... columns) {
+            return new DefaultTableModel(columns, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+        }
+
+        private JPanel titled(String title, DefaultTableModel model) {
+            JTable table = new JTable(model);
+            table.setFont(font);
+            table.setRowHeight(24);
+            table.setAutoCreateRowSorter(true);
+            table.getTableHeader().setFont(font.deriveFont(Font.BOLD));
+            table.getTableHeader().setBackground(primaryColor);
+            table.getTableHeader().setForeground(Color.WHITE);
+            JLabel label = new JLabel(title);
+            label.setFont(font.deriveFont(Font.BOLD));
+            JPanel panel = new JPanel(new BorderLayout(5, 5));
+            panel.setBackground(Color.WHITE);
+            panel.add(label, BorderLayout.NORTH);
+            panel.add(new JScrollPane(table), BorderLayout.CENTER);
+            return panel;
+        }
+
+        private JButton createButton(String text) {
+            JButton btn = new JButton(text);
+            btn.setFont(font.deriveFont(Font.BOLD));
+            btn.setBackground(primaryColor);
+            btn.setForeground(Color.WHITE);
+            btn.setFocusPainted(false);
+            btn.setPreferredSize(new Dimension(100, 35));
+            btn.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            return btn;
+        }
+    }
+
+    // --------- DIAGNOSTICS PANEL ---------
+    static class DiagnosticsPanel extends JPanel {
+        private static final int REFRESH_MS = 2_000;
+        private final DefaultTableModel model = new DefaultTableModel(
+                new String[]{"Statement", "Calls", "Errors", "Rows", "Mean ms", "p50 ms", "p95 ms", "p99 ms", "Max ms"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 0 ? String.class : column <= 3 ? Long.class : Double.class;
+            }
+        };
+        private final JLabel lblPool = new JLabel();
+        private final JLabel lblEdt = new JLabel();
+        private final JLabel lblGraph = new JLabel();
+        private final JLabel lblRouting = new JLabel();
+        private final JTextArea txtSlow = new JTextArea(8, 40);
+        private final Color primaryColor = new Color(59, 130, 246);
+        private final Font font = new Font("Segoe UI", Font.PLAIN, 14);
+
+        public DiagnosticsPanel() {
+            setLayout(new BorderLayout(15, 15));
+            setBorder(new EmptyBorder(20, 20, 20, 20));
+            setBackground(Color.WHITE);
+
+            JLabel header = new JLabel("Diagnostics");
+            header.setFont(new Font("Segoe UI", Font.BOLD, 24));
+            header.setForeground(primaryColor);
+            lblPool.setFont(font);
+            JPanel top = new JPanel(new BorderLayout(10, 10));
+            top.setBackground(Color.WHITE);
+            top.add(header, BorderLayout.NORTH);
+            top.add(lblPool, BorderLayout.CENTER);
+            lblEdt.setFont(font);
+            lblGraph.setFont(font);
+            lblRouting.setFont(font);
+            JPanel status = new JPanel(new GridLayout(0, 1));
+            status.setBackground(Color.WHITE);
+            status.add(lblEdt);
+            status.add(lblGraph);
+            status.add(lblRouting);
+            top.add(status, BorderLayout.SOUTH);
+            add(top, BorderLayout.NORTH);
+
+            JTable table = new JTable(model);
+            table.setFont(font);
+            table.setRowHeight(24);
+            table.setAutoCreateRowSorter(true);
+            table.getTableHeader().setFont(font.deriveFont(Font.BOLD));
+            table.getTableHeader().setBackground(primaryColor);
+            table.getTableHeader().setForeground(Color.WHITE);
+            table.getColumnModel().getColumn(0).setPreferredWidth(320);
+            add(new JScrollPane(table), BorderLayout.CENTER);
+
+            txtSlow.setEditable(false);
+            txtSlow.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            JButton btnExport = createButton("Export");
+            btnExport.setToolTipText("Write the metrics in Prometheus text format");
+            JButton btnReset = createButton("Reset");
+            JButton btnExplain = createButton("Explain");
+            btnExplain.setToolTipText("Show the query plan of every statement run so far");
+            JPanel actions = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+            actions.setBackground(Color.WHITE);
+            actions.add(btnExplain);
+            actions.add(btnExport);
+            actions.add(btnReset);
+            JPanel bottom = new JPanel(new BorderLayout(10, 10));
+            bottom.setBackground(Color.WHITE);
+            bottom.add(new JLabel("Slow queries (over " + QueryMetrics.SLOW_QUERY_MS + " ms):"), BorderLayout.NORTH);
+            bottom.add(new JScrollPane(txtSlow), BorderLayout.CENTER);
+            bottom.add(actions, BorderLayout.SOUTH);
+            add(bottom, BorderLayout.SOUTH);
+
+            btnExport.addActionListener(e -> exportPrometheus());
+            btnExplain.addActionListener(e -> explain());
+            btnReset.addActionListener(e -> {
+                QueryMetrics.reset();
+                EdtMonitor.DISPATCH.reset();
+                refresh();
+            });
+
+            // Only refreshes while the panel is on screen
+            Timer timer = new Timer(REFRESH_MS, e -> refresh());
+            addComponentListener(new ComponentAdapter() {
+                @Override
+                public void componentShown(ComponentEvent e) {
+                    refresh();
+                    timer.start();
+                }
+
+                @Override
+                public void componentHidden(ComponentEvent e) {
+                    timer.stop();
+                }
+            });
+        }
+
+        private void refresh() {
+            model.setRowCount(0);
+            for (QueryMetrics.Stats stats : QueryMetrics.snapshot()) {
+                model.addRow(new Object[]{stats.getName(), stats.getCount(), stats.getErrors(), stats.getRows(),
+                        round(stats.getMeanMillis()), round(stats.getP50Millis()), round(stats.getP95Millis()),
+                        round(stats.getP99Millis()), round(stats.getMaxMillis())});
+            }
+            lblPool.setText(String.format("Connection pool: %s, acquire p99=%.2fms", POOL, QueryMetrics.ACQUIRE.percentileMillis(99)));
+            txtSlow.setText(String.join("\n", QueryMetrics.slowQueries()));
+            lblEdt.setText(String.format("Event dispatch thread: p99=%.1fms, max=%.0fms, stalls over %dms=%d",
+                    EdtMonitor.DISPATCH.percentileMillis(99), EdtMonitor.DISPATCH.maxMillis(), EdtMonitor.STALL_MS, EdtMonitor.getStallCount()));
+            lblGraph.setText(EnrollmentGraph.INSTANCE.toString());
+            lblRouting.setText(ReadRouting.describe());
+        }
+
+        private static double round(double millis) {
+            return Math.round(millis * 100) / 100.0;
+        }
+
+        private void explain() {
+            List<QueryMetrics.Stats> statements = QueryMetrics.snapshot();
+            DataAccess.submit(null, null, () -> {
+                try (Connection conn = connectDB()) {
+                    return SchemaMigrator.explain(conn, statements);
+                }
+            }, report -> {
+                JTextArea text = new JTextArea(report.isEmpty() ? "No statements have run yet." : report, 30, 100);
+                text.setEditable(false);
+                text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                JOptionPane.showMessageDialog(this, new JScrollPane(text), "Query Plans", JOptionPane.PLAIN_MESSAGE);
+            }, ex -> JOptionPane.showMessageDialog(this, "Error explaining queries: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+
+        private void exportPrometheus() {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("course_enrollment.prom"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            try {
+                QueryMetrics.writePrometheus(chooser.getSelectedFile().toPath());
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Error exporting metrics: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
-            return -1;
         }
 
-        // Database connection method
-        private Connection connectDB() throws SQLException {
-            String url = "jdbc:mysql://localhost:3306/course_enrollment";
-            String user = "root";
-            String pass = "";
-            return DriverManager.getConnection(url, user, pass);
+        private JButton createButton(String text) {
+            JButton btn = new JButton(text);
+            btn.setFont(font.deriveFont(Font.BOLD));
+            btn.setBackground(primaryColor);
+            btn.setForeground(Color.WHITE);
+            btn.setFocusPainted(false);
+            btn.setPreferredSize(new Dimension(100, 35));
+            btn.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            return btn;
+        }
+    }
+
+    // --------- CHANGE EVENTS ---------
+    // Lets a panel patch its views when another panel changes shared rows. Rows use the
+    // StudentPanel / CoursePanel column layout; before is null for inserts, after is null for deletes.
+    static class DataEvents {
+        enum Entity { STUDENT, COURSE }
+
+        interface Listener {
+            void changed(Entity entity, Object[] before, Object[] after);
+        }
+
+        private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        static void subscribe(Listener listener) {
+            listeners.add(listener);
         }
+
+        // Called and delivered on the EDT
+        static void publish(Entity entity, Object[] before, Object[] after) {
+            for (Listener listener : listeners) {
+                listener.changed(entity, before, after);
+            }
+        }
+    }
+
+    static int generatedKey(PreparedStatement ps) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            if (!keys.next()) throw new SQLException("No generated key returned");
+            return keys.getInt(1);
+        }
+    }
+
+    // --------- ENTITY CACHE ---------
+    // Bounded, shared copy of the students and courses rows (same layout as the panels: id first,
+    // natural key second). Panels write through it; changes by other clients are noticed by polling the
+    // table's row count and id / updated_at high-water marks, and as a backstop the whole cache is cleared
+    // every maxAgeMs. Columns that change without an edit of the row, such as courses.seats_taken, are not
+    // cached: the course rows are cut off before them.
+    static class EntityCache {
+        private static final Logger LOG = Logger.getLogger(EntityCache.class.getName());
+        private static final int MAX_ENTRIES = Integer.getInteger("ce.cache.maxEntries", 100_000);
+        private static final long POLL_MS = Long.getLong("ce.cache.pollMs", 5_000);
+        private static final long MAX_AGE_MS = Long.getLong("ce.cache.maxAgeMs", 300_000);
+
+        static final EntityCache STUDENTS = new EntityCache("students", "student_id", 5,
+                "SELECT id, student_id, first_name, last_name, middle_name FROM students", StudentPanel::readStudents);
+        static final EntityCache COURSES = new EntityCache("courses", "course_code", 5,
+                "SELECT id, course_code, course_name, instructor, capacity, seats_taken FROM courses", CoursePanel::readCourses);
+
+        interface RowReader {
+            List<Object[]> read(ResultSet rs) throws SQLException;
+        }
+
+        private final String table, keyColumn, select;
+        private final int columns; // leading columns of a panel row that are kept
+        private final RowReader reader;
+        // Least recently used first; guarded by this
+        private final LinkedHashMap<Integer, Object[]> byId = new LinkedHashMap<Integer, Object[]>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+                if (size() <= MAX_ENTRIES) return false;
+                byKey.remove(naturalKey(eldest.getValue()));
+                evictions++;
+                complete = false;
+                return true;
+            }
+        };
+        private final Map<String, Object[]> byKey = new HashMap<>();
+        private boolean complete; // byId holds every row of the table
+        private String signature;
+        private long checkedAt, loadedAt;
+        private long hits, misses, evictions, invalidations;
+
+        EntityCache(String table, String keyColumn, int columns, String select, RowReader reader) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.columns = columns;
+            this.select = select;
+            this.reader = reader;
+            this.loadedAt = System.currentTimeMillis();
+        }
+
+        // Every row ordered by natural key; served from memory once the whole table has been read
+        List<Object[]> all(Connection conn) throws SQLException {
+            validate(conn);
+            synchronized (this) {
+                if (complete) {
+                    hits++;
+                    List<Object[]> rows = new ArrayList<>(byId.values());
+                    rows.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare((String) a[1], (String) b[1]));
+                    return rows;
+                }
+                misses++;
+            }
+            List<Object[]> rows = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(select + " ORDER BY " + keyColumn)) {
+                for (Object[] row : reader.read(rs)) rows.add(trim(row));
+            }
+            synchronized (this) {
+                clear();
+                putAll(rows);
+                complete = rows.size() <= MAX_ENTRIES;
+            }
+            return rows;
+        }
+
+        // Looks up the given ids, reading the missing ones in a single query
+        Map<Integer, Object[]> getAll(Connection conn, Set<Integer> ids) throws SQLException {
+            validate(conn);
+            Map<Integer, Object[]> found = new HashMap<>();
+            List<Integer> missing = new ArrayList<>();
+            synchronized (this) {
+                for (Integer id : ids) {
+                    Object[] row = byId.get(id);
+                    if (row != null) found.put(id, row);
+                    else missing.add(id);
+                }
+                hits += found.size();
+                misses += missing.size();
+            }
+            if (missing.isEmpty()) return found;
+            try (PreparedStatement ps = conn.prepareStatement(select + " WHERE id IN (" + Enrollments.placeholders(missing.size()) + ")")) {
+                for (int i = 0; i < missing.size(); i++) ps.setInt(i + 1, missing.get(i));
+                List<Object[]> rows;
+                try (ResultSet rs = ps.executeQuery()) {
+                    rows = reader.read(rs);
+                }
+                for (Object[] row : rows) {
+                    row = trim(row);
+                    put(row);
+                    found.put((Integer) row[0], row);
+                }
+            }
+            return found;
+        }
+
+        // Memory-only lookup by natural key, e.g. student_id; null when not cached
+        synchronized Object[] peek(String key) {
+            Object[] row = byKey.get(key.toLowerCase());
+            if (row != null) hits++;
+            else misses++;
+            return row;
+        }
+
+        synchronized void put(Object[] row) {
+            row = trim(row);
+            Object[] previous = byId.put((Integer) row[0], row);
+            if (previous != null) byKey.remove(naturalKey(previous));
+            byKey.put(naturalKey(row), row);
+        }
+
+        synchronized void putAll(List<Object[]> rows) {
+            for (Object[] row : rows) put(row);
+        }
+
+        synchronized void remove(int id) {
+            Object[] previous = byId.remove(id);
+            if (previous != null) byKey.remove(naturalKey(previous));
+        }
+
+        // After bulk writes such as a CSV import
+        synchronized void invalidate() {
+            clear();
+            signature = null;
+            invalidations++;
+        }
+
+        // Records the table state after this client's own write-through, so it does not invalidate the cache
+        void acknowledge(Connection conn) throws SQLException {
+            String current = readSignature(conn);
+            synchronized (this) {
+                signature = current;
+                checkedAt = System.currentTimeMillis();
+            }
+        }
+
+        private void validate(Connection conn) throws SQLException {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (now - loadedAt > MAX_AGE_MS && !byId.isEmpty()) {
+                    clear();
+                    invalidations++;
+                }
+                if (now - checkedAt < POLL_MS) return;
+                checkedAt = now;
+            }
+            String current;
+            if (ReadRouting.isReplica(conn)) {
+                // A lagging replica would not match the signature acknowledged after our own writes
+                try (Connection primary = connectDB()) {
+                    current = readSignature(primary);
+                }
+            } else {
+                current = readSignature(conn);
+            }
+            synchronized (this) {
+                if (signature != null && !signature.equals(current)) {
+                    LOG.fine(() -> table + " changed by another client, dropping " + byId.size() + " cached rows");
+                    clear();
+                    invalidations++;
+                }
+                signature = current;
+            }
+        }
+
+        private String readSignature(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MAX(id), MAX(updated_at) FROM " + table)) {
+                rs.next();
+                return rs.getLong(1) + "/" + rs.getLong(2) + "/" + rs.getTimestamp(3);
+            }
+        }
+
+        private Object[] trim(Object[] row) {
+            return row.length > columns ? Arrays.copyOf(row, columns) : row;
+        }
+
+        private void clear() {
+            byId.clear();
+            byKey.clear();
+            complete = false;
+            loadedAt = System.currentTimeMillis();
+        }
+
+        private static String naturalKey(Object[] row) {
+            return ((String) row[1]).toLowerCase();
+        }
+
+        synchronized int size() { return byId.size(); }
+        synchronized long getHitCount() { return hits; }
+        synchronized long getMissCount() { return misses; }
+        synchronized long getEvictionCount() { return evictions; }
+        synchronized long getInvalidationCount() { return invalidations; }
+
+        synchronized double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s: size=%d complete=%b hits=%d misses=%d hitRatio=%.2f evictions=%d invalidations=%d",
+                    table, byId.size(), complete, hits, misses, getHitRatio(), evictions, invalidations);
+        }
+    }
+
+    // --------- ENROLLMENT WRITES ---------
+    // Shared by the enrollment panel and any other code that enrolls students.
+    // Seats are counted in courses.seats_taken and taken with a conditional UPDATE on the course row, so
+    // concurrent clients cannot oversell a course; capacity NULL means unlimited. Every write takes its
+    // locks in one order: the active term row (shared, see Terms.current), the course row, the course's
+    // enrollment rows, then its waitlist rows. The course row comes before the insert because the insert's
+    // foreign key check would otherwise share-lock it first, and two enrollments could then never upgrade
+    // that lock for their seat update. The per-day counters of EnrollmentStats are adjusted last.
+    static class Enrollments {
+        static final int ALREADY_ENROLLED = -1, WAITLISTED = -2;
+        private static final String INSERT = "INSERT INTO enrollments (student_id, course_id, term) VALUES (?, ?, ?)";
+        private static final String INSERT_IGNORE = "INSERT IGNORE INTO enrollments (student_id, course_id, term) VALUES (?, ?, ?)";
+        private static final String WAITLIST = "INSERT INTO waitlist (student_id, course_id) VALUES (?, ?) " +
+                                               "ON DUPLICATE KEY UPDATE student_id = student_id";
+        private static final int ER_DUP_ENTRY = 1062;
+
+        // Returns the new enrollment id, ALREADY_ENROLLED, or WAITLISTED when the course is full
+        static int enroll(Connection conn, int studentId, int courseId) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                String term = Terms.current(conn);
+                if (!takeSeats(conn, courseId, 1)) {
+                    // The failed update still holds the course row, so the student cannot be enrolled meanwhile
+                    if (!existingPairs(conn, term, new int[]{studentId}, new int[]{courseId}).isEmpty()) {
+                        conn.rollback();
+                        return ALREADY_ENROLLED;
+                    }
+                    try (PreparedStatement ps = conn.prepareStatement(WAITLIST)) {
+                        ps.setInt(1, studentId);
+                        ps.setInt(2, courseId);
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                    return WAITLISTED;
+                }
+                int enrollmentId;
+                try (PreparedStatement ps = conn.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, studentId);
+                    ps.setInt(2, courseId);
+                    ps.setString(3, term);
+                    ps.executeUpdate();
+                    enrollmentId = generatedKey(ps);
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    conn.rollback(); // which also gives the seat back
+                    if (e.getErrorCode() == ER_DUP_ENTRY) return ALREADY_ENROLLED;
+                    throw e; // e.g. the student was deleted meanwhile
+                }
+                EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+                stats.enrolledToday(term, courseId, 1);
+                stats.apply(conn);
+                conn.commit();
+                EnrollmentGraph.INSTANCE.added(conn, new int[]{studentId}, new int[]{courseId});
+                return enrollmentId;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // Frees the seat and hands it to the first waitlisted student, if any.
+        // Returns the number of students promoted, or -1 when the enrollment was already gone.
+        static int unenroll(Connection conn, int enrollmentId) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                Set<Integer> touched = new HashSet<>();
+                EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+                int promoted = remove(conn, enrollmentId, touched, stats);
+                stats.apply(conn);
+                conn.commit();
+                EnrollmentGraph.INSTANCE.coursesChanged(conn, touched);
+                return promoted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // Deleting a student would cascade to the enrollments without freeing their seats (foreign key
+        // actions do not fire triggers), so the enrollments are removed explicitly first. The last, locking
+        // pass picks up any enrollment added meanwhile and keeps new ones out until the student is gone.
+        static int deleteStudent(Connection conn, int studentId) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                Set<Integer> touched = new HashSet<>();
+                EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+                for (int enrollmentId : studentEnrollments(conn, studentId, Integer.MAX_VALUE, "")) remove(conn, enrollmentId, touched, stats);
+                for (int enrollmentId : studentEnrollments(conn, studentId, Integer.MAX_VALUE, " FOR UPDATE")) remove(conn, enrollmentId, touched, stats);
+                int deleted;
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM students WHERE id = ?")) {
+                    ps.setInt(1, studentId);
+                    deleted = ps.executeUpdate();
+                }
+                stats.apply(conn);
+                conn.commit();
+                EnrollmentGraph.INSTANCE.coursesChanged(conn, touched);
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // The enrollments go by the foreign key cascade; their per-day counts are taken off first, with the
+        // course row locked so that no enrollment can be added to it meanwhile
+        static int deleteCourse(Connection conn, int courseId) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM courses WHERE id = ? FOR UPDATE")) {
+                    ps.setInt(1, courseId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.rollback();
+                            return 0;
+                        }
+                    }
+                }
+                EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT term, DATE(enrollment_date), COUNT(*) FROM enrollments WHERE course_id = ? GROUP BY 1, 2")) {
+                    ps.setInt(1, courseId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) stats.removed(rs.getString(1), rs.getString(2), courseId, rs.getInt(3));
+                    }
+                }
+                int deleted;
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM courses WHERE id = ?")) {
+                    ps.setInt(1, courseId);
+                    deleted = ps.executeUpdate();
+                }
+                stats.apply(conn);
+                conn.commit();
+                EnrollmentGraph.INSTANCE.courseRemoved(conn, courseId);
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // One step of a chunked student delete (see DeletionJobs): up to 'limit' of the student's waitlist
+        // entries, or once those are gone, of its enrollments, with their seats handed to the waitlists.
+        // Must run inside the caller's transaction; returns the number of rows removed.
+        static int removeStudentChunk(Connection conn, int studentId, int limit, Set<Integer> touched) throws SQLException {
+            int removed = deleteWaitlisted(conn, "student_id", studentId, limit);
+            if (removed > 0) return removed;
+            EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+            for (int enrollmentId : studentEnrollments(conn, studentId, limit, "")) {
+                if (remove(conn, enrollmentId, touched, stats) >= 0) removed++;
+            }
+            stats.apply(conn);
+            return removed;
+        }
+
+        // Up to 'limit' of the student's enrollment ids in course order, optionally with a locking suffix
+        private static List<Integer> studentEnrollments(Connection conn, int studentId, int limit, String lock) throws SQLException {
+            List<Integer> enrollmentIds = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM enrollments WHERE student_id = ? ORDER BY course_id LIMIT ?" + lock)) {
+                ps.setInt(1, studentId);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) enrollmentIds.add(rs.getInt(1));
+                }
+            }
+            return enrollmentIds;
+        }
+
+        // The same for a course; its freed seats are not offered to the waitlist, which is emptied first.
+        // Only the active term's enrollments hold a seat, so only those are taken off seats_taken.
+        static int removeCourseChunk(Connection conn, int courseId, int limit, Set<Integer> touched) throws SQLException {
+            int removed = deleteWaitlisted(conn, "course_id", courseId, limit);
+            if (removed > 0) return removed;
+            String term = Terms.current(conn); // before the course row lock, as in remove()
+            lockCourse(conn, courseId);
+            List<Integer> enrollmentIds = new ArrayList<>();
+            int seats = 0;
+            EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+            try (PreparedStatement ps = conn.prepareStatement("SELECT id, DATE(enrollment_date), term FROM enrollments WHERE course_id = ? " +
+                    "ORDER BY student_id LIMIT ? FOR UPDATE")) {
+                ps.setInt(1, courseId);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        enrollmentIds.add(rs.getInt(1));
+                        stats.removed(rs.getString(3), rs.getString(2), courseId, 1);
+                        if (rs.getString(3).equals(term)) seats++;
+                    }
+                }
+            }
+            if (enrollmentIds.isEmpty()) return 0;
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM enrollments WHERE id IN (" + placeholders(enrollmentIds.size()) + ")")) {
+                for (int i = 0; i < enrollmentIds.size(); i++) ps.setInt(i + 1, enrollmentIds.get(i));
+                removed = ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE courses SET seats_taken = GREATEST(seats_taken - ?, 0) WHERE id = ?")) {
+                ps.setInt(1, seats);
+                ps.setInt(2, courseId);
+                ps.executeUpdate();
+            }
+            stats.apply(conn);
+            touched.add(courseId);
+            return removed;
+        }
+
+        private static int deleteWaitlisted(Connection conn, String column, int id, int limit) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM waitlist WHERE " + column + " = ? ORDER BY id LIMIT ?")) {
+                ps.setInt(1, id);
+                ps.setInt(2, limit);
+                return ps.executeUpdate();
+            }
+        }
+
+        // Fills free seats from the waitlist in arrival order, e.g. after the capacity was raised.
+        // Must run inside the caller's transaction, which has already locked the course row; returns the
+        // number of students promoted.
+        static int promoteWaitlisted(Connection conn, int courseId) throws SQLException {
+            EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+            int promoted = promoteWaitlisted(conn, courseId, stats);
+            stats.apply(conn);
+            return promoted;
+        }
+
+        private static int promoteWaitlisted(Connection conn, int courseId, EnrollmentStats.Delta stats) throws SQLException {
+            String term = Terms.current(conn);
+            int promoted = 0;
+            while (true) {
+                int waitId, studentId;
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id, student_id FROM waitlist WHERE course_id = ? ORDER BY id LIMIT 1 FOR UPDATE")) {
+                    ps.setInt(1, courseId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) break;
+                        waitId = rs.getInt(1);
+                        studentId = rs.getInt(2);
+                    }
+                }
+                if (!takeSeats(conn, courseId, 1)) break;
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM waitlist WHERE id = ?")) {
+                    ps.setInt(1, waitId);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(INSERT)) {
+                    ps.setInt(1, studentId);
+                    ps.setInt(2, courseId);
+                    ps.setString(3, term);
+                    ps.executeUpdate();
+                    promoted++;
+                } catch (SQLIntegrityConstraintViolationException e) {
+                    if (e.getErrorCode() != ER_DUP_ENTRY) throw e;
+                    releaseSeat(conn, courseId); // enrolled meanwhile by other means
+                }
+            }
+            stats.enrolledToday(term, courseId, promoted);
+            return promoted;
+        }
+
+        // Adds the course to 'touched' so the caller can refresh its roster once committed
+        private static int remove(Connection conn, int enrollmentId, Set<Integer> touched, EnrollmentStats.Delta stats) throws SQLException {
+            String term = Terms.current(conn); // before any course row lock, in the same order as start()
+            int courseId;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT course_id FROM enrollments WHERE id = ?")) {
+                ps.setInt(1, enrollmentId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return -1;
+                    courseId = rs.getInt(1);
+                }
+            }
+            lockCourse(conn, courseId);
+            boolean current;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT DATE(enrollment_date), term FROM enrollments WHERE id = ? FOR UPDATE")) {
+                ps.setInt(1, enrollmentId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return -1; // removed while the course row was awaited
+                    stats.removed(rs.getString(2), rs.getString(1), courseId, 1);
+                    current = rs.getString(2).equals(term);
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM enrollments WHERE id = ?")) {
+                ps.setInt(1, enrollmentId);
+                ps.executeUpdate();
+            }
+            if (!current) return 0; // a past term's enrollment holds no seat
+            releaseSeat(conn, courseId);
+            touched.add(courseId);
+            return promoteWaitlisted(conn, courseId, stats);
+        }
+
+        // The atomic seat check: succeeds only while the course has room for 'count' more students
+        private static boolean takeSeats(Connection conn, int courseId, int count) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE courses SET seats_taken = seats_taken + ? WHERE id = ? AND (capacity IS NULL OR seats_taken + ? <= capacity)")) {
+                ps.setInt(1, count);
+                ps.setInt(2, courseId);
+                ps.setInt(3, count);
+                return ps.executeUpdate() == 1;
+            }
+        }
+
+        private static void releaseSeat(Connection conn, int courseId) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE courses SET seats_taken = GREATEST(seats_taken - 1, 0) WHERE id = ?")) {
+                ps.setInt(1, courseId);
+                ps.executeUpdate();
+            }
+        }
+
+        private static void lockCourse(Connection conn, int courseId) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM courses WHERE id = ? FOR UPDATE")) {
+                ps.setInt(1, courseId);
+                ps.executeQuery().close();
+            }
+        }
+
+        // Seats left in the course, locking its row for the rest of the transaction
+        private static int freeSeats(Connection conn, int courseId) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT capacity, seats_taken FROM courses WHERE id = ? FOR UPDATE")) {
+                ps.setInt(1, courseId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) throw new SQLException("Course " + courseId + " no longer exists");
+                    int capacity = rs.getInt(1);
+                    return rs.wasNull() ? Integer.MAX_VALUE : Math.max(0, capacity - rs.getInt(2));
+                }
+            }
+        }
+
+        static int enrollStudentInCourses(Connection conn, int studentId, int[] courseIds) throws SQLException {
+            int[] studentIds = new int[courseIds.length];
+            Arrays.fill(studentIds, studentId);
+            return enrollAll(conn, studentIds, courseIds);
+        }
+
+        static int enrollStudentsInCourse(Connection conn, int[] studentIds, int courseId) throws SQLException {
+            int[] courseIds = new int[studentIds.length];
+            Arrays.fill(courseIds, courseId);
+            return enrollAll(conn, studentIds, courseIds);
+        }
+
+        // Enrolls the (studentIds[i], courseIds[i]) pairs in one transaction: one query finds the pairs
+        // that already exist, then the courses go in id order, so concurrent bulk enrollments cannot
+        // deadlock. Each course row is locked with its free seats read, and the rest of its students are
+        // enrolled up to the free seats, one INSERT IGNORE each (a rewritten batch reports no per-row
+        // counts): a count of 0 means the pair was added meanwhile, and its seat goes to the next student.
+        // The others are waitlisted in one batch; should one of them have been enrolled meanwhile, its
+        // waitlist entry is dropped when promoted. Returns the number of enrollments added.
+        static int enrollAll(Connection conn, int[] studentIds, int[] courseIds) throws SQLException {
+            return enrollAll(conn, studentIds, courseIds, new int[studentIds.length]);
+        }
+
+        // Same, and sets outcomes[i] to 0 when the pair was enrolled, or to ALREADY_ENROLLED or WAITLISTED
+        static int enrollAll(Connection conn, int[] studentIds, int[] courseIds, int[] outcomes) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                String term = Terms.current(conn);
+                Set<Long> existing = existingPairs(conn, term, studentIds, courseIds);
+                Map<Integer, List<Integer>> byCourse = new HashMap<>(); // course id to indexes into the arrays
+                for (int i = 0; i < studentIds.length; i++) {
+                    if (existing.add(pairKey(studentIds[i], courseIds[i]))) {
+                        byCourse.computeIfAbsent(courseIds[i], c -> new ArrayList<>()).add(i);
+                    } else {
+                        outcomes[i] = ALREADY_ENROLLED;
+                    }
+                }
+                List<Integer> courses = new ArrayList<>(byCourse.keySet());
+                Collections.sort(courses);
+                int added = 0;
+                EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+                int[] addedStudents = new int[studentIds.length], addedCourses = new int[studentIds.length];
+                try (PreparedStatement enroll = conn.prepareStatement(INSERT_IGNORE);
+                     PreparedStatement waitlist = conn.prepareStatement(WAITLIST);
+                     PreparedStatement seats = conn.prepareStatement("UPDATE courses SET seats_taken = seats_taken + ? WHERE id = ?")) {
+                    for (int courseId : courses) {
+                        List<Integer> pending = byCourse.get(courseId);
+                        int free = freeSeats(conn, courseId);
+                        int granted = 0;
+                        for (int idx : pending) {
+                            int studentId = studentIds[idx];
+                            if (granted < free) {
+                                enroll.setInt(1, studentId);
+                                enroll.setInt(2, courseId);
+                                enroll.setString(3, term);
+                                enroll.clearWarnings();
+                                if (enroll.executeUpdate() == 0) {
+                                    // IGNORE also downgrades a foreign key error, e.g. a student deleted meanwhile
+                                    SQLWarning warning = enroll.getWarnings();
+                                    if (warning != null && warning.getErrorCode() != ER_DUP_ENTRY) {
+                                        throw new SQLIntegrityConstraintViolationException(warning.getMessage(), warning.getSQLState(), warning.getErrorCode());
+                                    }
+                                    outcomes[idx] = ALREADY_ENROLLED;
+                                } else {
+                                    addedStudents[added + granted] = studentId;
+                                    addedCourses[added + granted] = courseId;
+                                    granted++;
+                                    outcomes[idx] = 0;
+                                }
+                            } else {
+                                waitlist.setInt(1, studentId);
+                                waitlist.setInt(2, courseId);
+                                waitlist.addBatch();
+                                outcomes[idx] = WAITLISTED;
+                            }
+                        }
+                        if (granted > 0) {
+                            seats.setInt(1, granted);
+                            seats.setInt(2, courseId);
+                            seats.addBatch();
+                        }
+                        added += granted;
+                        stats.enrolledToday(term, courseId, granted);
+                    }
+                    waitlist.executeBatch();
+                    seats.executeBatch();
+                }
+                stats.apply(conn);
+                conn.commit();
+                EnrollmentGraph.INSTANCE.added(conn, Arrays.copyOf(addedStudents, added), Arrays.copyOf(addedCourses, added));
+                return added;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        private static Set<Long> existingPairs(Connection conn, String term, int[] studentIds, int[] courseIds) throws SQLException {
+            int[] students = Arrays.stream(studentIds).distinct().toArray();
+            int[] courses = Arrays.stream(courseIds).distinct().toArray();
+            String sql = "SELECT student_id, course_id FROM enrollments WHERE student_id IN (" + placeholders(students.length)
+                    + ") AND course_id IN (" + placeholders(courses.length) + ") AND term = ?";
+            Set<Long> pairs = new HashSet<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int p = 1;
+                for (int id : students) ps.setInt(p++, id);
+                for (int id : courses) ps.setInt(p++, id);
+                ps.setString(p, term);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) pairs.add(pairKey(rs.getInt(1), rs.getInt(2)));
+                }
+            }
+            return pairs;
+        }
+
+        static long pairKey(int studentId, int courseId) {
+            return ((long) studentId << 32) | (courseId & 0xFFFFFFFFL);
+        }
+
+        static String placeholders(int count) {
+            return String.join(", ", Collections.nCopies(count, "?"));
+        }
+    }
+
+    // --------- TERMS ---------
+    // Enrollments belong to an academic term. One term is active: new enrollments, seat counts, waitlists,
+    // the enrollment graph and the enrollment panel's default listing are all about it. Starting a new term
+    // closes the active one; a closed term can then be archived, which moves its enrollments out of the
+    // live table into enrollments_archive (partitioned by term), so the live joins and duplicate checks
+    // only carry the terms still in use. History searches read both tables.
+    static class Terms {
+        private static final Logger LOG = Logger.getLogger(Terms.class.getName());
+        private static final long POLL_MS = Long.getLong("ce.term.pollMs", 30_000);
+        private static final int ARCHIVE_BATCH = Integer.getInteger("ce.archive.batchSize", 1_000);
+        private static final long ARCHIVE_PAUSE_MS = Long.getLong("ce.archive.pauseMs", 50);
+        private static final int HISTORY_LIMIT = Integer.getInteger("ce.archive.historyLimit", 1_000);
+
+        private static volatile String active;
+        private static volatile long checkedAt;
+
+        // For reads: cached, and re-read every pollMs, so a term started by another client is picked up.
+        // Writes use current() instead.
+        static String active(Connection conn) throws SQLException {
+            String term = active;
+            long now = System.currentTimeMillis();
+            if (term != null && now - checkedAt < POLL_MS) return term;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT code FROM terms WHERE state = 'active' ORDER BY started_at DESC LIMIT 1")) {
+                if (!rs.next()) throw new SQLException("There is no active term; start one from the enrollment panel");
+                term = rs.getString(1);
+            }
+            active = term;
+            checkedAt = now;
+            return term;
+        }
+
+        // The active term, read inside the caller's write transaction under a shared lock on the terms rows.
+        // start() locks them for update first, so a term cannot change while an enrollment is being written
+        // into it: either the write commits into the old term before the switch, or it waits and sees the new one.
+        static String current(Connection conn) throws SQLException {
+            String term;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT code FROM terms WHERE state = 'active' ORDER BY started_at DESC LIMIT 1 LOCK IN SHARE MODE")) {
+                if (!rs.next()) throw new SQLException("There is no active term; start one from the enrollment panel");
+                term = rs.getString(1);
+            }
+            active = term;
+            checkedAt = System.currentTimeMillis();
+            return term;
+        }
+
+        // Code and state ('active', 'closed' or 'archived') of every term, newest first
+        static List<String[]> list(Connection conn) throws SQLException {
+            List<String[]> terms = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT code, state FROM terms ORDER BY started_at DESC, code DESC")) {
+                while (rs.next()) terms.add(new String[]{rs.getString(1), rs.getString(2)});
+            }
+            return terms;
+        }
+
+        // Closes the active term and opens the given one; waitlists and seat counts start over
+        static void start(Connection conn, String code) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Waits for the enrollment writes holding the active term (see current) and keeps new ones out
+                stmt.executeQuery("SELECT code FROM terms WHERE state = 'active' FOR UPDATE").close();
+                stmt.executeUpdate("UPDATE terms SET state = 'closed' WHERE state = 'active'");
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO terms (code, state) VALUES (?, 'active')")) {
+                    ps.setString(1, code);
+                    ps.executeUpdate();
+                }
+                stmt.executeUpdate("DELETE FROM waitlist");
+                stmt.executeUpdate("UPDATE courses SET seats_taken = 0");
+                conn.commit();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                conn.rollback();
+                throw new SQLException("Term " + code + " already exists", e);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            active = code;
+            checkedAt = System.currentTimeMillis();
+            EntityCache.COURSES.invalidate();
+            EnrollmentGraph.INSTANCE.invalidate();
+        }
+
+        // Moves a closed term's enrollments to enrollments_archive, ARCHIVE_BATCH rows per transaction with a
+        // pause in between, copying the student and course codes and names so the history outlives later
+        // deletes. An interrupted run is simply started again; it continues with the rows still left.
+        // Returns the number of enrollments moved.
+        static int archive(String code, DeletionJobs.ProgressListener onProgress) throws SQLException, InterruptedException {
+            int total;
+            try (Connection conn = connectDB();
+                 PreparedStatement ps = conn.prepareStatement("SELECT state, (SELECT COUNT(*) FROM enrollments WHERE term = code) FROM terms WHERE code = ?")) {
+                ps.setString(1, code);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) throw new SQLException("Term " + code + " does not exist");
+                    if (!rs.getString(1).equals("closed")) throw new SQLException("Only a closed term can be archived; " + code + " is " + rs.getString(1));
+                    total = rs.getInt(2);
+                }
+            }
+            int moved = 0;
+            while (true) {
+                long start = System.nanoTime();
+                int count;
+                try (Connection conn = connectDB()) {
+                    count = archiveBatch(conn, code);
+                }
+                if (count == 0) break;
+                moved += count;
+                onProgress.progress(moved, total);
+                Thread.sleep(Math.max(ARCHIVE_PAUSE_MS, (System.nanoTime() - start) / 1_000_000));
+            }
+            try (Connection conn = connectDB();
+                 PreparedStatement ps = conn.prepareStatement("UPDATE terms SET state = 'archived' WHERE code = ?")) {
+                ps.setString(1, code);
+                ps.executeUpdate();
+            }
+            LOG.info("Archived " + moved + " enrollments of term " + code);
+            return moved;
+        }
+
+        private static int archiveBatch(Connection conn, String code) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                List<Integer> ids = new ArrayList<>();
+                EnrollmentStats.Delta stats = new EnrollmentStats.Delta();
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id, course_id, DATE(enrollment_date) FROM enrollments " +
+                        "WHERE term = ? ORDER BY id LIMIT ? FOR UPDATE")) {
+                    ps.setString(1, code);
+                    ps.setInt(2, ARCHIVE_BATCH);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                            stats.removed(code, rs.getString(3), rs.getInt(2), 1);
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    conn.rollback();
+                    return 0;
+                }
+                String in = " IN (" + Enrollments.placeholders(ids.size()) + ")";
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO enrollments_archive (id, term, student_id, student_code, " +
+                        "student_name, course_id, course_code, course_name, enrollment_date) " +
+                        "SELECT e.id, e.term, e.student_id, s.student_id, CONCAT_WS(' ', s.first_name, s.last_name), " +
+                        "e.course_id, c.course_code, c.course_name, e.enrollment_date " +
+                        "FROM enrollments e JOIN students s ON s.id = e.student_id JOIN courses c ON c.id = e.course_id WHERE e.id" + in)) {
+                    for (int i = 0; i < ids.size(); i++) ps.setInt(i + 1, ids.get(i));
+                    ps.executeUpdate();
+                }
+                int count;
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM enrollments WHERE id" + in)) {
+                    for (int i = 0; i < ids.size(); i++) ps.setInt(i + 1, ids.get(i));
+                    count = ps.executeUpdate();
+                }
+                stats.apply(conn);
+                conn.commit();
+                return count;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // Every enrollment, live or archived, of the student or course with this code, newest term first.
+        // Columns: term, student ID, student name, course code, course name, enrollment date.
+        static List<Object[]> history(Connection conn, String code) throws SQLException {
+            String live = "SELECT e.term, s.student_id, CONCAT_WS(' ', s.first_name, s.last_name), c.course_code, c.course_name, e.enrollment_date " +
+                          "FROM enrollments e JOIN students s ON s.id = e.student_id JOIN courses c ON c.id = e.course_id ";
+            String archived = "SELECT term, student_code, student_name, course_code, course_name, enrollment_date FROM enrollments_archive ";
+            String sql = live + "WHERE s.student_id = ? UNION " + live + "WHERE c.course_code = ? UNION " +
+                         archived + "WHERE student_code = ? UNION " + archived + "WHERE course_code = ? " +
+                         "ORDER BY 1 DESC, 2, 4 LIMIT ?";
+            List<Object[]> rows = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (int i = 1; i <= 4; i++) ps.setString(i, code);
+                ps.setInt(5, HISTORY_LIMIT);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new Object[]{rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5), rs.getTimestamp(6)});
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    // --------- ENROLLMENT STATISTICS ---------
+    // The numbers behind the reports panel, kept up to date instead of aggregated from the enrollments:
+    // headcounts are courses.seats_taken, and enrollment_daily counts the live enrollments by term and by
+    // the day they were made. Both describe the active term in a report. Enrollments adjusts them in the
+    // transaction that adds or removes the rows, so a report costs the same whatever the number of
+    // enrollments. Each day is split over SLOTS rows by course, so concurrent enrollments in different
+    // courses rarely wait on the same counter row.
+    static class EnrollmentStats {
+        static final int SLOTS = 16;
+        private static final int MAX_COURSES = Integer.getInteger("ce.reports.maxCourses", 1_000);
+        private static final int TOP_COURSES = Integer.getInteger("ce.reports.topCourses", 10);
+        private static final int DAYS = Integer.getInteger("ce.reports.days", 30);
+
+        static final class Report {
+            String term;
+            long enrollments;
+            // Courses with at least one enrollment, and those at capacity
+            int enrolledCourses, fullCourses;
+            // Course code, name, enrolled, capacity (null when unlimited)
+            final List<Object[]> courses = new ArrayList<>();
+            final List<Object[]> topCourses = new ArrayList<>();
+            // Day, enrolled; newest first
+            final List<Object[]> days = new ArrayList<>();
+        }
+
+        static Report load(Connection conn) throws SQLException {
+            Report report = new Report();
+            report.term = Terms.active(conn);
+            try (PreparedStatement ps = conn.prepareStatement("SELECT COALESCE(SUM(enrolled), 0) FROM enrollment_daily WHERE term = ?")) {
+                ps.setString(1, report.term);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    report.enrollments = rs.getLong(1);
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT SUM(seats_taken > 0), SUM(seats_taken >= capacity) FROM courses")) {
+                    rs.next();
+                    report.enrolledCourses = rs.getInt(1);
+                    report.fullCourses = rs.getInt(2);
+                }
+            }
+            readCourses(conn, "SELECT course_code, course_name, seats_taken, capacity FROM courses ORDER BY course_code LIMIT ?",
+                    MAX_COURSES, report.courses);
+            readCourses(conn, "SELECT course_code, course_name, seats_taken, capacity FROM courses ORDER BY seats_taken DESC LIMIT ?",
+                    TOP_COURSES, report.topCourses);
+            try (PreparedStatement ps = conn.prepareStatement("SELECT day, SUM(enrolled) FROM enrollment_daily " +
+                    "WHERE term = ? AND day > CURRENT_DATE - INTERVAL ? DAY GROUP BY day ORDER BY day DESC")) {
+                ps.setString(1, report.term);
+                ps.setInt(2, DAYS);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) report.days.add(new Object[]{rs.getDate(1), rs.getLong(2)});
+                }
+            }
+            return report;
+        }
+
+        private static void readCourses(Connection conn, String sql, int limit, List<Object[]> into) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        into.add(new Object[]{rs.getString(1), rs.getString(2), rs.getInt(3), rs.getObject(4, Integer.class)});
+                    }
+                }
+            }
+        }
+
+        private static int slot(int courseId) {
+            return Math.floorMod(courseId, SLOTS);
+        }
+
+        // Counter changes collected during a write transaction. apply() runs just before the commit, after
+        // every course row lock was taken, and updates the rows in (term, day, slot) order, so two writers
+        // cannot deadlock on the counters.
+        static final class Delta {
+            // By term, then by day as yyyy-mm-dd in the session time zone, as DATE() returns it
+            private final TreeMap<String, TreeMap<String, int[]>> byTerm = new TreeMap<>();
+            private final int[] today = new int[SLOTS];
+            private String todayTerm;
+            private boolean todayChanged;
+
+            // Enrollments are only added to the active term, so one transaction adds to a single term
+            void enrolledToday(String term, int courseId, int count) {
+                todayTerm = term;
+                today[slot(courseId)] += count;
+                todayChanged |= count != 0;
+            }
+
+            void removed(String term, String day, int courseId, int count) {
+                byTerm.computeIfAbsent(term, t -> new TreeMap<>()).computeIfAbsent(day, d -> new int[SLOTS])[slot(courseId)] -= count;
+            }
+
+            void apply(Connection conn) throws SQLException {
+                if (todayChanged && byTerm.isEmpty()) {
+                    write(conn, todayTerm, null, today);
+                    return;
+                }
+                if (todayChanged) {
+                    int[] counts = byTerm.computeIfAbsent(todayTerm, t -> new TreeMap<>())
+                            .computeIfAbsent(currentDate(conn), d -> new int[SLOTS]);
+                    for (int slot = 0; slot < SLOTS; slot++) counts[slot] += today[slot];
+                }
+                for (Map.Entry<String, TreeMap<String, int[]>> term : byTerm.entrySet()) {
+                    for (Map.Entry<String, int[]> day : term.getValue().entrySet()) write(conn, term.getKey(), day.getKey(), day.getValue());
+                }
+            }
+
+            // A null day is the server's current date
+            private static void write(Connection conn, String term, String day, int[] counts) throws SQLException {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    if (counts[slot] == 0) continue;
+                    String sql = counts[slot] > 0
+                            ? "INSERT INTO enrollment_daily (term, day, slot, enrolled) VALUES (?, COALESCE(?, CURRENT_DATE), ?, ?) " +
+                              "ON DUPLICATE KEY UPDATE enrolled = enrolled + VALUES(enrolled)"
+                            : "UPDATE enrollment_daily SET enrolled = GREATEST(enrolled + ?, 0) " +
+                              "WHERE term = ? AND day = COALESCE(?, CURRENT_DATE) AND slot = ?";
+                    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                        if (counts[slot] > 0) {
+                            ps.setString(1, term);
+                            ps.setString(2, day);
+                            ps.setInt(3, slot);
+                            ps.setInt(4, counts[slot]);
+                        } else {
+                            ps.setInt(1, counts[slot]);
+                            ps.setString(2, term);
+                            ps.setString(3, day);
+                            ps.setInt(4, slot);
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+            }
+
+            private static String currentDate(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT CURRENT_DATE")) {
+                    rs.next();
+                    return rs.getString(1);
+                }
+            }
+        }
+    }
+
+    // --------- DELETION JOBS ---------
+    // Deleting a student or course used to cascade to all of its enrollments in one transaction, locking a
+    // full course's rows and seat counter for the whole cascade. With more than CHUNK dependent rows the
+    // delete becomes a job: waitlist entries and enrollments go CHUNK at a time in short transactions, with
+    // a pause between them at least as long as the chunk took, and the parent row goes last. Each chunk
+    // records its progress in deletion_jobs in the same transaction, so a job interrupted by a crash is
+    // resumed where it stopped the next time the program starts.
+    static class DeletionJobs {
+        private static final Logger LOG = Logger.getLogger(DeletionJobs.class.getName());
+        private static final int CHUNK = Integer.getInteger("ce.delete.chunkSize", 200);
+        private static final long PAUSE_MS = Long.getLong("ce.delete.pauseMs", 20);
+
+        enum Target { STUDENT, COURSE }
+
+        interface ProgressListener {
+            void progress(int removed, int total);
+        }
+
+        // Shows a progress dialog while the job runs; closing it leaves the job running in the background
+        static void start(Component parent, Target target, int id, Consumer<Integer> onDone, Consumer<Exception> onError) {
+            String what = target.name().toLowerCase();
+            ProgressMonitor monitor = new ProgressMonitor(parent, "Deleting " + what + " and its enrollments", "", 0, 1000);
+            monitor.setMillisToDecideToPopup(500);
+            DataAccess.submitJob(() -> delete(target, id, (removed, total) -> SwingUtilities.invokeLater(() -> {
+                monitor.setProgress((int) (removed * 1000L / Math.max(1, total)));
+                monitor.setNote(String.format("%,d of %,d enrollment and waitlist rows removed", removed, total));
+            })), deleted -> {
+                monitor.close();
+                onDone.accept(deleted);
+            }, e -> {
+                monitor.close();
+                onError.accept(e);
+            });
+        }
+
+        // Returns the number of parent rows deleted, 0 when another client deleted it first
+        static int delete(Target target, int id, ProgressListener onProgress) throws SQLException, InterruptedException {
+            long jobId;
+            int removed, total;
+            try (Connection conn = connectDB()) {
+                total = countDependents(conn, target, id);
+                if (total <= CHUNK) return finish(conn, target, id);
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id, removed, total FROM deletion_jobs " +
+                        "WHERE state = 'running' AND target = ? AND target_id = ?")) {
+                    ps.setString(1, target.name());
+                    ps.setInt(2, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            // Already started, e.g. by an earlier attempt that failed
+                            jobId = rs.getLong(1);
+                            removed = rs.getInt(2);
+                            total = Math.max(total + removed, rs.getInt(3));
+                        } else {
+                            jobId = createJob(conn, target, id, total);
+                            removed = 0;
+                        }
+                    }
+                }
+            }
+            LOG.info("Deleting " + target.name().toLowerCase() + " " + id + " in chunks: " + total + " dependent rows");
+            return run(jobId, target, id, removed, total, onProgress);
+        }
+
+        // Continues the jobs a previous run left unfinished; called once at startup
+        static void resumePending() {
+            List<Object[]> jobs = new ArrayList<>();
+            try (Connection conn = connectDB();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT id, target, target_id, removed, total FROM deletion_jobs WHERE state = 'running' ORDER BY id")) {
+                while (rs.next()) {
+                    jobs.add(new Object[]{rs.getLong(1), Target.valueOf(rs.getString(2)), rs.getInt(3), rs.getInt(4), rs.getInt(5)});
+                }
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "Could not read pending deletion jobs", e);
+                return;
+            }
+            for (Object[] job : jobs) {
+                LOG.info(() -> "Resuming deletion of " + job[1].toString().toLowerCase() + " " + job[2] + " after " + job[3] + " of " + job[4] + " rows");
+                DataAccess.backgroundJob(() -> {
+                    try {
+                        run((Long) job[0], (Target) job[1], (Integer) job[2], (Integer) job[3], (Integer) job[4], (removed, total) -> { });
+                    } catch (Exception e) {
+                        LOG.log(Level.WARNING, "Deletion job " + job[0] + " failed; it resumes at the next start", e);
+                    }
+                });
+            }
+        }
+
+        private static int run(long jobId, Target target, int id, int removed, int total, ProgressListener onProgress)
+                throws SQLException, InterruptedException {
+            while (true) {
+                long start = System.nanoTime();
+                int count;
+                try (Connection conn = connectDB()) {
+                    count = chunk(conn, jobId, target, id);
+                }
+                if (count == 0) break;
+                removed += count;
+                onProgress.progress(removed, total);
+                long tookMs = (System.nanoTime() - start) / 1_000_000;
+                Thread.sleep(Math.max(PAUSE_MS, tookMs));
+            }
+            try (Connection conn = connectDB()) {
+                int deleted = finish(conn, target, id);
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE deletion_jobs SET state = 'done', updated_at = CURRENT_TIMESTAMP WHERE id = ?")) {
+                    ps.setLong(1, jobId);
+                    ps.executeUpdate();
+                }
+                return deleted;
+            }
+        }
+
+        private static int chunk(Connection conn, long jobId, Target target, int id) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                Set<Integer> touched = new HashSet<>();
+                int count = target == Target.STUDENT
+                        ? Enrollments.removeStudentChunk(conn, id, CHUNK, touched)
+                        : Enrollments.removeCourseChunk(conn, id, CHUNK, touched);
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE deletion_jobs SET removed = removed + ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?")) {
+                    ps.setInt(1, count);
+                    ps.setLong(2, jobId);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                EnrollmentGraph.INSTANCE.coursesChanged(conn, touched);
+                return count;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        // Deletes the parent with whatever was added to it since the last chunk, in one transaction
+        private static int finish(Connection conn, Target target, int id) throws SQLException {
+            EntityCache cache = target == Target.STUDENT ? EntityCache.STUDENTS : EntityCache.COURSES;
+            int deleted = target == Target.STUDENT ? Enrollments.deleteStudent(conn, id) : Enrollments.deleteCourse(conn, id);
+            cache.remove(id);
+            cache.acknowledge(conn);
+            return deleted;
+        }
+
+        private static int countDependents(Connection conn, Target target, int id) throws SQLException {
+            String column = target == Target.STUDENT ? "student_id" : "course_id";
+            try (PreparedStatement ps = conn.prepareStatement("SELECT (SELECT COUNT(*) FROM enrollments WHERE " + column + " = ?) " +
+                    "+ (SELECT COUNT(*) FROM waitlist WHERE " + column + " = ?)")) {
+                ps.setInt(1, id);
+                ps.setInt(2, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getInt(1);
+                }
+            }
+        }
+
+        private static long createJob(Connection conn, Target target, int id, int total) throws SQLException {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO deletion_jobs (target, target_id, total) VALUES (?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, target.name());
+                ps.setInt(2, id);
+                ps.setInt(3, total);
+                ps.executeUpdate();
+                return generatedKey(ps);
+            }
+        }
+    }
+
+    // --------- ENROLLMENT GRAPH ---------
+    // Both directions of the enrollments table in memory: the courses of every student and the students
+    // of every course, as sorted int arrays in int-keyed open-addressing tables (about 8 bytes per
+    // enrollment, no boxed Integers). Roster sizes, schedules and overlap checks are answered without a
+    // query. This client's writes are applied once committed; other clients' changes are noticed by
+    // polling the table's row count and id high-water mark, as EntityCache does.
+    static class EnrollmentGraph {
+        private static final Logger LOG = Logger.getLogger(EnrollmentGraph.class.getName());
+        private static final long POLL_MS = Long.getLong("ce.graph.pollMs", 5_000);
+        private static final long MAX_AGE_MS = Long.getLong("ce.graph.maxAgeMs", 300_000);
+
+        static final EnrollmentGraph INSTANCE = new EnrollmentGraph();
+
+        // Guarded by this
+        private IntSetIndex coursesByStudent = new IntSetIndex();
+        private IntSetIndex studentsByCourse = new IntSetIndex();
+        private int edges;
+        private boolean loaded;
+        private String signature;
+        private long checkedAt, loadedAt, writes;
+        private long loads, lastLoadMillis;
+
+        // Loads the graph on first use, and again when it is too old or another client changed the table
+        void sync(Connection conn) throws SQLException {
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (loaded && now - loadedAt <= MAX_AGE_MS && now - checkedAt < POLL_MS) return;
+            }
+            String current = readSignature(conn);
+            synchronized (this) {
+                checkedAt = now;
+                if (loaded && now - loadedAt <= MAX_AGE_MS && current.equals(signature)) return;
+                if (loaded) LOG.fine(() -> "enrollments changed by another client, reloading " + edges + " edges");
+            }
+            load(conn, current);
+        }
+
+        private void load(Connection conn, String current) throws SQLException {
+            long start = System.nanoTime();
+            long writesBefore;
+            synchronized (this) {
+                writesBefore = writes;
+            }
+            // Sorted by student, so both sides receive their values in ascending order
+            IntSetIndex byStudent = new IntSetIndex(), byCourse = new IntSetIndex();
+            int count = 0;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT student_id, course_id FROM enrollments WHERE term = ? ORDER BY student_id, course_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+                ps.setString(1, Terms.active(conn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int studentId = rs.getInt(1), courseId = rs.getInt(2);
+                        byStudent.append(studentId, courseId);
+                        byCourse.append(courseId, studentId);
+                        count++;
+                    }
+                }
+            }
+            byStudent.trim();
+            byCourse.trim();
+            synchronized (this) {
+                coursesByStudent = byStudent;
+                studentsByCourse = byCourse;
+                edges = count;
+                loaded = true;
+                loadedAt = System.currentTimeMillis();
+                // A write of ours applied to the old tables meanwhile may be missing; check again next time
+                signature = writes == writesBefore ? current : null;
+                loads++;
+                lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+            }
+        }
+
+        synchronized int rosterSize(int courseId) { return studentsByCourse.size(courseId); }
+        synchronized int scheduleSize(int studentId) { return coursesByStudent.size(studentId); }
+        synchronized int[] roster(int courseId) { return studentsByCourse.get(courseId); }
+        synchronized int[] schedule(int studentId) { return coursesByStudent.get(studentId); }
+        synchronized boolean isEnrolled(int studentId, int courseId) { return coursesByStudent.contains(studentId, courseId); }
+
+        // Students taking both courses, i.e. who could not attend both if they were held at the same time
+        synchronized int sharedStudents(int courseA, int courseB) { return studentsByCourse.common(courseA, courseB); }
+
+        // The methods below record this client's committed writes; they do nothing until the graph has
+        // been loaded. The graph is only a cache, so a failure here drops it instead of failing the write.
+
+        void added(Connection conn, int[] studentIds, int[] courseIds) {
+            synchronized (this) {
+                if (!loaded) return;
+                for (int i = 0; i < studentIds.length; i++) {
+                    if (coursesByStudent.add(studentIds[i], courseIds[i])) {
+                        studentsByCourse.add(courseIds[i], studentIds[i]);
+                        edges++;
+                    }
+                }
+                writes++;
+            }
+            acknowledge(conn);
+        }
+
+        // Re-reads the rosters of these courses, e.g. after removals that promoted waitlisted students
+        void coursesChanged(Connection conn, Set<Integer> courseIds) {
+            synchronized (this) {
+                if (!loaded || courseIds.isEmpty()) return;
+            }
+            IntSetIndex fresh = new IntSetIndex();
+            List<Integer> ids = new ArrayList<>(courseIds);
+            try (PreparedStatement ps = conn.prepareStatement("SELECT course_id, student_id FROM enrollments WHERE course_id IN ("
+                    + Enrollments.placeholders(ids.size()) + ") AND term = ? ORDER BY course_id, student_id")) {
+                for (int i = 0; i < ids.size(); i++) ps.setInt(i + 1, ids.get(i));
+                ps.setString(ids.size() + 1, Terms.active(conn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) fresh.append(rs.getInt(1), rs.getInt(2));
+                }
+            } catch (SQLException e) {
+                LOG.log(Level.FINE, "Could not re-read course rosters, dropping the enrollment graph", e);
+                invalidate();
+                return;
+            }
+            synchronized (this) {
+                for (int courseId : ids) {
+                    int[] students = fresh.get(courseId);
+                    for (int studentId : studentsByCourse.removeKey(courseId)) {
+                        if (Arrays.binarySearch(students, studentId) < 0 && coursesByStudent.remove(studentId, courseId)) edges--;
+                    }
+                    for (int studentId : students) {
+                        studentsByCourse.append(courseId, studentId);
+                        if (coursesByStudent.add(studentId, courseId)) edges++;
+                    }
+                }
+                writes++;
+            }
+            acknowledge(conn);
+        }
+
+        void courseRemoved(Connection conn, int courseId) {
+            synchronized (this) {
+                if (!loaded) return;
+                for (int studentId : studentsByCourse.removeKey(courseId)) {
+                    if (coursesByStudent.remove(studentId, courseId)) edges--;
+                }
+                writes++;
+            }
+            acknowledge(conn);
+        }
+
+        // After bulk writes such as a CSV import
+        synchronized void invalidate() {
+            coursesByStudent = new IntSetIndex();
+            studentsByCourse = new IntSetIndex();
+            edges = 0;
+            loaded = false;
+            signature = null;
+        }
+
+        private void acknowledge(Connection conn) {
+            String current;
+            try {
+                current = readSignature(conn);
+            } catch (SQLException e) {
+                current = null; // compared on the next sync, which then reloads
+            }
+            synchronized (this) {
+                signature = current;
+                checkedAt = System.currentTimeMillis();
+            }
+        }
+
+        // The active term is part of it, so a term started by another client reloads the graph
+        private static String readSignature(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MAX(id) FROM enrollments")) {
+                rs.next();
+                return Terms.active(conn) + "/" + rs.getLong(1) + "/" + rs.getLong(2);
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("Enrollment graph: loaded=%b students=%d courses=%d enrollments=%d memory=%dKB loads=%d lastLoad=%dms",
+                    loaded, coursesByStudent.keyCount(), studentsByCourse.keyCount(), edges,
+                    (coursesByStudent.footprintBytes() + studentsByCourse.footprintBytes()) / 1024, loads, lastLoadMillis);
+        }
+
+        // int -> sorted set of ints with linear probing. Ids are AUTO_INCREMENT values, so key 0 marks a
+        // free slot. Each set is an int array with spare room at its end, sizes[slot] entries long.
+        static final class IntSetIndex {
+            private static final int[] EMPTY = new int[0];
+            private int[] keys = new int[16];
+            private int[][] sets = new int[16][];
+            private int[] sizes = new int[16];
+            private int keyCount;
+
+            int size(int key) {
+                int slot = slot(key);
+                return keys[slot] == 0 ? 0 : sizes[slot];
+            }
+
+            int[] get(int key) {
+                int slot = slot(key);
+                return keys[slot] == 0 ? EMPTY : Arrays.copyOf(sets[slot], sizes[slot]);
+            }
+
+            boolean contains(int key, int value) {
+                int slot = slot(key);
+                return keys[slot] != 0 && Arrays.binarySearch(sets[slot], 0, sizes[slot], value) >= 0;
+            }
+
+            // Size of the intersection of two sets, by merging them
+            int common(int keyA, int keyB) {
+                int a = slot(keyA), b = slot(keyB);
+                if (keys[a] == 0 || keys[b] == 0) return 0;
+                int[] setA = sets[a], setB = sets[b];
+                int i = 0, j = 0, common = 0;
+                while (i < sizes[a] && j < sizes[b]) {
+                    if (setA[i] < setB[j]) i++;
+                    else if (setA[i] > setB[j]) j++;
+                    else {
+                        common++;
+                        i++;
+                        j++;
+                    }
+                }
+                return common;
+            }
+
+            // Bulk loading: the value must be greater than every value already in the key's set
+            void append(int key, int value) {
+                int slot = claim(key);
+                int n = sizes[slot];
+                if (n == sets[slot].length) sets[slot] = Arrays.copyOf(sets[slot], Math.max(4, n * 2));
+                sets[slot][n] = value;
+                sizes[slot] = n + 1;
+            }
+
+            boolean add(int key, int value) {
+                int slot = claim(key);
+                int n = sizes[slot];
+                int[] set = sets[slot];
+                int at = Arrays.binarySearch(set, 0, n, value);
+                if (at >= 0) return false;
+                at = -at - 1;
+                if (n == set.length) set = sets[slot] = Arrays.copyOf(set, Math.max(4, n + (n >> 1)));
+                System.arraycopy(set, at, set, at + 1, n - at);
+                set[at] = value;
+                sizes[slot] = n + 1;
+                return true;
+            }
+
+            boolean remove(int key, int value) {
+                int slot = slot(key);
+                if (keys[slot] == 0) return false;
+                int n = sizes[slot];
+                int[] set = sets[slot];
+                int at = Arrays.binarySearch(set, 0, n, value);
+                if (at < 0) return false;
+                System.arraycopy(set, at + 1, set, at, n - at - 1);
+                if (--sizes[slot] == 0) delete(slot);
+                return true;
+            }
+
+            // Removes the key and returns its former set
+            int[] removeKey(int key) {
+                int slot = slot(key);
+                if (keys[slot] == 0) return EMPTY;
+                int[] set = Arrays.copyOf(sets[slot], sizes[slot]);
+                delete(slot);
+                return set;
+            }
+
+            // Drops the spare room left by bulk loading
+            void trim() {
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != 0 && sets[i].length > sizes[i]) sets[i] = Arrays.copyOf(sets[i], sizes[i]);
+                }
+            }
+
+            int keyCount() {
+                return keyCount;
+            }
+
+            // Approximate heap use, assuming 16-byte array headers and compressed references
+            long footprintBytes() {
+                long bytes = 3 * 16L + keys.length * 12L;
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] != 0) bytes += 16 + sets[i].length * 4L;
+                }
+                return bytes;
+            }
+
+            // The slot holding the key, or the free slot where it would go
+            private int slot(int key) {
+                int mask = keys.length - 1;
+                int i = hash(key) & mask;
+                while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+                return i;
+            }
+
+            private int claim(int key) {
+                int slot = slot(key);
+                if (keys[slot] != 0) return slot;
+                if ((keyCount + 1) * 4 > keys.length * 3) {
+                    grow();
+                    slot = slot(key);
+                }
+                keys[slot] = key;
+                sets[slot] = EMPTY;
+                sizes[slot] = 0;
+                keyCount++;
+                return slot;
+            }
+
+            // Backward-shift deletion, so lookups never need tombstones
+            private void delete(int slot) {
+                int mask = keys.length - 1;
+                int hole = slot;
+                for (int i = (slot + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                    int home = hash(keys[i]) & mask;
+                    if (((i - home) & mask) >= ((i - hole) & mask)) {
+                        keys[hole] = keys[i];
+                        sets[hole] = sets[i];
+                        sizes[hole] = sizes[i];
+                        hole = i;
+                    }
+                }
+                keys[hole] = 0;
+                sets[hole] = null;
+                sizes[hole] = 0;
+                keyCount--;
+            }
+
+            private void grow() {
+                int[] oldKeys = keys, oldSizes = sizes;
+                int[][] oldSets = sets;
+                keys = new int[oldKeys.length * 2];
+                sets = new int[keys.length][];
+                sizes = new int[keys.length];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] == 0) continue;
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    sets[slot] = oldSets[i];
+                    sizes[slot] = oldSizes[i];
+                }
+            }
+
+            private static int hash(int key) {
+                int h = key * 0x9E3779B9;
+                return h ^ (h >>> 16);
+            }
+        }
+    }
+
+    // --------- CONNECTION POOL ---------
+    static final ConnectionPool POOL = new ConnectionPool(
+            System.getProperty("ce.db.url", "jdbc:mysql://localhost:3306/course_enrollment?rewriteBatchedStatements=true&useServerPrepStmts=true"),
+            System.getProperty("ce.db.user", "root"),
+            System.getProperty("ce.db.password", ""));
+
+    // Shared database connection method used by every panel
+    static Connection connectDB() throws SQLException {
+        return POOL.getConnection();
+    }
+
+    static class ConnectionPool {
+        private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+        // Connections used within this window are trusted without a validation round trip
+        private static final long VALIDATION_BYPASS_MS = 500;
+        private static final int VALIDATION_TIMEOUT_SEC = 2;
+
+        final String url;
+        private final String user, pass;
+        private final int minIdle = Integer.getInteger("ce.pool.minIdle", 2);
+        private final int maxSize = Integer.getInteger("ce.pool.maxSize", 10);
+        private final long borrowTimeoutMs = Long.getLong("ce.pool.borrowTimeoutMs", 5_000);
+        private final long idleTimeoutMs = Long.getLong("ce.pool.idleTimeoutMs", 300_000);
+        private final long leakThresholdMs = Long.getLong("ce.pool.leakThresholdMs", 30_000);
+        // Prepared statements kept open per connection; with useServerPrepStmts each is parsed and planned
+        // by the server once per connection instead of on every call
+        private final int statementCacheSize = Integer.getInteger("ce.pool.statementCacheSize", 64);
+        private final int statementCacheSqlLimit = Integer.getInteger("ce.pool.statementCacheSqlLimit", 2048);
+
+        private final Semaphore permits;
+        private final Deque<PooledConnection> idle = new ArrayDeque<>(); // guarded by this
+        private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger openCount = new AtomicInteger();
+        private final AtomicLong borrowCount = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong statementHits = new AtomicLong();
+        private final AtomicLong statementMisses = new AtomicLong();
+        private final ScheduledExecutorService housekeeper;
+        private volatile boolean closed;
+
+        ConnectionPool(String url, String user, String pass) {
+            this.url = url;
+            this.user = user;
+            this.pass = pass;
+            this.permits = new Semaphore(maxSize, true);
+            this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "connection-pool-housekeeper");
+                t.setDaemon(true);
+                return t;
+            });
+            housekeeper.scheduleWithFixedDelay(this::housekeep, 0, 30, TimeUnit.SECONDS);
+        }
+
+        Connection getConnection() throws SQLException {
+            if (closed) throw new SQLException("Connection pool is closed");
+            long start = System.nanoTime();
+            try {
+                if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMs
+                            + " ms waiting for a database connection (" + borrowed.size() + " in use)");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+
+            try {
+                PooledConnection pc = takeValidIdle();
+                if (pc == null) pc = open();
+                pc.borrowedAt = System.currentTimeMillis();
+                pc.borrowSite = leakThresholdMs > 0 ? new Throwable("Connection borrowed here") : null;
+                pc.leakReported = false;
+                borrowed.add(pc);
+
+                long waited = System.nanoTime() - start;
+                QueryMetrics.ACQUIRE.record(waited);
+                borrowCount.incrementAndGet();
+                totalWaitNanos.addAndGet(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                return pc.newHandle();
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private PooledConnection takeValidIdle() {
+            while (true) {
+                PooledConnection pc;
+                synchronized (this) {
+                    pc = idle.pollFirst();
+                }
+                if (pc == null) return null;
+                if (System.currentTimeMillis() - pc.lastUsed < VALIDATION_BYPASS_MS || isValid(pc)) return pc;
+                discard(pc);
+            }
+        }
+
+        private boolean isValid(PooledConnection pc) {
+            try {
+                return pc.raw.isValid(VALIDATION_TIMEOUT_SEC);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private PooledConnection open() throws SQLException {
+            PooledConnection pc = new PooledConnection(DriverManager.getConnection(url, user, pass));
+            openCount.incrementAndGet();
+            return pc;
+        }
+
+        private void release(PooledConnection pc) {
+            borrowed.remove(pc);
+            try {
+                boolean reusable = !closed && !pc.raw.isClosed();
+                if (reusable && !pc.raw.getAutoCommit()) {
+                    pc.raw.rollback();
+                    pc.raw.setAutoCommit(true);
+                }
+                if (reusable) {
+                    pc.lastUsed = System.currentTimeMillis();
+                    synchronized (this) {
+                        idle.addFirst(pc);
+                    }
+                } else {
+                    discard(pc);
+                }
+            } catch (SQLException e) {
+                discard(pc);
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void discard(PooledConnection pc) {
+            openCount.decrementAndGet();
+            try {
+                pc.raw.close();
+            } catch (SQLException ignored) {}
+        }
+
+        private static void closeQuietly(Statement stmt) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {}
+        }
+
+        // Evicts idle connections, tops the pool back up to minIdle and reports leaks
+        private void housekeep() {
+            long now = System.currentTimeMillis();
+            List<PooledConnection> expired = new ArrayList<>();
+            synchronized (this) {
+                Iterator<PooledConnection> it = idle.descendingIterator();
+                while (it.hasNext() && idle.size() > minIdle) {
+                    PooledConnection pc = it.next();
+                    if (now - pc.lastUsed > idleTimeoutMs) {
+                        it.remove();
+                        expired.add(pc);
+                    }
+                }
+            }
+            expired.forEach(this::discard);
+
+            while (!closed && getIdleCount() < minIdle && openCount.get() < maxSize) {
+                try {
+                    PooledConnection pc = open();
+                    pc.lastUsed = now;
+                    synchronized (this) {
+                        idle.addLast(pc);
+                    }
+                } catch (SQLException e) {
+                    break; // database unavailable, try again on the next run
+                }
+            }
+
+            if (leakThresholdMs > 0) {
+                for (PooledConnection pc : borrowed) {
+                    if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMs) {
+                        pc.leakReported = true;
+                        LOG.log(Level.WARNING, "Connection held for " + (now - pc.borrowedAt)
+                                + " ms without being closed, possible leak", pc.borrowSite);
+                    }
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            housekeeper.shutdownNow();
+            synchronized (this) {
+                idle.forEach(this::discard);
+                idle.clear();
+            }
+        }
+
+        // Pool metrics
+        int getActiveCount() { return borrowed.size(); }
+        synchronized int getIdleCount() { return idle.size(); }
+        int getOpenCount() { return openCount.get(); }
+        long getBorrowCount() { return borrowCount.get(); }
+        long getTotalWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()); }
+        long getMaxWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()); }
+        long getStatementCacheHits() { return statementHits.get(); }
+        long getStatementCacheMisses() { return statementMisses.get(); }
+
+        double getAverageWaitMillis() {
+            long count = borrowCount.get();
+            return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+        }
+
+        double getStatementCacheHitRatio() {
+            long hits = statementHits.get(), lookups = hits + statementMisses.get();
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d open=%d borrows=%d avgWait=%.2fms maxWait=%dms statements=%d/%d hitRatio=%.2f",
+                    getActiveCount(), getIdleCount(), getOpenCount(), getBorrowCount(),
+                    getAverageWaitMillis(), getMaxWaitMillis(), getStatementCacheHits(),
+                    getStatementCacheHits() + getStatementCacheMisses(), getStatementCacheHitRatio());
+        }
+
+        private class PooledConnection {
+            final Connection raw;
+            volatile long lastUsed, borrowedAt;
+            volatile Throwable borrowSite;
+            volatile boolean leakReported;
+            // Idle statements by generated-keys flag and SQL, least recently used first; closed with the connection
+            private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= statementCacheSize) return false;
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+
+            PooledConnection(Connection raw) {
+                this.raw = raw;
+            }
+
+            // prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are served from the cache
+            private boolean cacheable(Object[] args) {
+                return statementCacheSize > 0 && args != null && args[0] instanceof String
+                        && ((String) args[0]).length() <= statementCacheSqlLimit
+                        && (args.length == 1 || (args.length == 2 && args[1] instanceof Integer));
+            }
+
+            private PreparedStatement prepareCached(Object[] args) throws SQLException {
+                String sql = (String) args[0];
+                int generatedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                String key = generatedKeys + ":" + sql;
+                PreparedStatement ps;
+                synchronized (statements) {
+                    ps = statements.remove(key); // checked out, so a nested use of the same SQL gets its own
+                }
+                if (ps != null && !ps.isClosed()) {
+                    statementHits.incrementAndGet();
+                } else {
+                    statementMisses.incrementAndGet();
+                    ps = args.length == 2 ? raw.prepareStatement(sql, generatedKeys) : raw.prepareStatement(sql);
+                }
+                PreparedStatement cached = ps;
+                AtomicBoolean returned = new AtomicBoolean();
+                return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, (proxy, method, methodArgs) -> {
+                            switch (method.getName()) {
+                                case "close":
+                                    if (returned.compareAndSet(false, true)) checkIn(key, cached);
+                                    return null;
+                                case "isClosed":
+                                    return returned.get() || cached.isClosed();
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                case "equals":
+                                    return proxy == methodArgs[0];
+                            }
+                            if (returned.get()) throw new SQLException("Statement is closed");
+                            try {
+                                return method.invoke(cached, methodArgs);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+
+            // Undoes what callers change per use; a statement that cannot be reset is closed instead
+            private void checkIn(String key, PreparedStatement ps) {
+                try {
+                    ps.clearParameters();
+                    ps.clearBatch();
+                    ps.setMaxRows(0);
+                } catch (SQLException e) {
+                    closeQuietly(ps);
+                    return;
+                }
+                PreparedStatement displaced;
+                synchronized (statements) {
+                    displaced = statements.put(key, ps);
+                }
+                if (displaced != null) closeQuietly(displaced);
+            }
+
+            // Each borrow gets its own handle so a stale reference cannot close a reused connection
+            Connection newHandle() {
+                AtomicBoolean handleClosed = new AtomicBoolean();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "close":
+                                    if (handleClosed.compareAndSet(false, true)) release(this);
+                                    return null;
+                                case "isClosed":
+                                    return handleClosed.get() || raw.isClosed();
+                                case "toString":
+                                    return "Pooled" + raw;
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                case "equals":
+                                    return proxy == args[0];
+                            }
+                            if (handleClosed.get()) throw new SQLException("Connection is closed");
+                            if (method.getName().equals("prepareStatement") && cacheable(args)) {
+                                return QueryMetrics.instrument(prepareCached(args), (String) args[0]);
+                            }
+                            try {
+                                Object result = method.invoke(raw, args);
+                                if (result instanceof Statement) {
+                                    return QueryMetrics.instrument((Statement) result, args != null && args[0] instanceof String ? (String) args[0] : null);
+                                }
+                                return result;
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        }
+    }
+
+    // --------- READ ROUTING ---------
+    // Listing and search reads go to the replicas in ce.db.replicaUrls (comma separated), round robin;
+    // writes, and every other read, stay on the primary pool. A replica whose replication has stopped or
+    // that lags more than ce.db.maxReplicaLagSec is skipped until it catches up, and with none usable the
+    // reads go to the primary. A scope (a panel's table model or picker) that wrote, or was told about a
+    // write, within ce.db.stickyMs reads from the primary too, so it always sees that write.
+    // To try it locally, start a second MariaDB (e.g. port 3307) replicating from the first with
+    // CHANGE MASTER TO ... and START SLAVE, and run with -Dce.db.replicaUrls=jdbc:mysql://localhost:3307/course_enrollment;
+    // STOP SLAVE on it sends the reads back to the primary. The lag check needs REPLICATION CLIENT, and
+    // -Dce.db.allowStandaloneReplica=true accepts a second server loaded from the dump without replication.
+    static class ReadRouting {
+        private static final Logger LOG = Logger.getLogger(ReadRouting.class.getName());
+        private static final long MAX_LAG_SEC = Long.getLong("ce.db.maxReplicaLagSec", 2);
+        private static final long CHECK_MS = Long.getLong("ce.db.replicaCheckMs", 1_000);
+        // Long enough for a write to reach every replica that passed the last lag check
+        private static final long STICKY_MS = Long.getLong("ce.db.stickyMs", MAX_LAG_SEC * 1_000 + CHECK_MS + 1_000);
+        private static final boolean ALLOW_STANDALONE = Boolean.getBoolean("ce.db.allowStandaloneReplica");
+        private static final long NOT_REPLICATING = -1;
+
+        private static final List<Replica> REPLICAS = replicas();
+        private static final Map<Object, Long> lastWrite = Collections.synchronizedMap(new WeakHashMap<>());
+        private static final Set<Connection> replicaHandles = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<>()));
+        private static final AtomicInteger next = new AtomicInteger();
+        private static final LongAdder replicaReads = new LongAdder(), primaryReads = new LongAdder(), stickyReads = new LongAdder();
+
+        private static final class Replica {
+            final String url;
+            final ConnectionPool pool;
+            volatile boolean usable;
+            volatile String state = "not checked";
+
+            Replica(String url) {
+                this.url = url;
+                this.pool = new ConnectionPool(url, System.getProperty("ce.db.replicaUser", System.getProperty("ce.db.user", "root")),
+                        System.getProperty("ce.db.replicaPassword", System.getProperty("ce.db.password", "")));
+            }
+
+            void markDown(String reason) {
+                if (usable) LOG.warning(() -> "Replica " + url + " skipped: " + reason);
+                usable = false;
+                state = reason;
+            }
+        }
+
+        private static List<Replica> replicas() {
+            List<Replica> replicas = new ArrayList<>();
+            for (String url : System.getProperty("ce.db.replicaUrls", "").split(",")) {
+                if (!url.isBlank()) replicas.add(new Replica(url.trim()));
+            }
+            if (!replicas.isEmpty()) {
+                ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "replica-lag-check");
+                    t.setDaemon(true);
+                    return t;
+                });
+                checker.scheduleWithFixedDelay(() -> replicas.forEach(ReadRouting::check), 0, CHECK_MS, TimeUnit.MILLISECONDS);
+            }
+            return Collections.unmodifiableList(replicas);
+        }
+
+        // A connection for a read made on behalf of scope; null for reads that belong to no panel
+        static Connection connect(Object scope) throws SQLException {
+            if (REPLICAS.isEmpty()) return connectDB();
+            if (isSticky(scope)) {
+                stickyReads.increment();
+                return connectDB();
+            }
+            int start = next.getAndIncrement();
+            for (int i = 0; i < REPLICAS.size(); i++) {
+                Replica replica = REPLICAS.get(Math.floorMod(start + i, REPLICAS.size()));
+                if (!replica.usable) continue;
+                try {
+                    Connection conn = replica.pool.getConnection();
+                    replicaHandles.add(conn);
+                    replicaReads.increment();
+                    return conn;
+                } catch (SQLException e) {
+                    replica.markDown(e.getMessage());
+                }
+            }
+            primaryReads.increment();
+            return connectDB();
+        }
+
+        // Call once a write made in scope, or one it must show, has been committed
+        static void wrote(Object scope) {
+            if (!REPLICAS.isEmpty()) lastWrite.put(scope, System.currentTimeMillis());
+        }
+
+        static boolean isReplica(Connection conn) {
+            return !REPLICAS.isEmpty() && replicaHandles.contains(conn);
+        }
+
+        private static boolean isSticky(Object scope) {
+            if (scope == null) return false;
+            Long at = lastWrite.get(scope);
+            return at != null && System.currentTimeMillis() - at < STICKY_MS;
+        }
+
+        private static void check(Replica replica) {
+            try (Connection conn = replica.pool.getConnection()) {
+                long lag = lagSeconds(conn);
+                if (lag == NOT_REPLICATING && !ALLOW_STANDALONE) {
+                    replica.markDown("replication is not configured");
+                } else if (lag > MAX_LAG_SEC) {
+                    replica.markDown("lagging " + lag + "s");
+                } else {
+                    if (!replica.usable) LOG.info(() -> "Replica " + replica.url + " is serving reads");
+                    replica.usable = true;
+                    replica.state = lag == NOT_REPLICATING ? "standalone" : "lag " + lag + "s";
+                }
+            } catch (SQLException e) {
+                replica.markDown(e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Replica lag check failed", e);
+                replica.markDown(e.toString());
+            }
+        }
+
+        // Seconds behind the primary; a stopped replication thread reports NULL and counts as infinitely behind
+        private static long lagSeconds(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = replicaStatus(stmt)) {
+                if (!rs.next()) return NOT_REPLICATING;
+                long lag = rs.getLong(lagColumn(rs.getMetaData()));
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            }
+        }
+
+        private static ResultSet replicaStatus(Statement stmt) throws SQLException {
+            try {
+                return stmt.executeQuery("SHOW SLAVE STATUS");
+            } catch (SQLSyntaxErrorException e) {
+                return stmt.executeQuery("SHOW REPLICA STATUS"); // MySQL 8.4 dropped the old name
+            }
+        }
+
+        private static int lagColumn(ResultSetMetaData meta) throws SQLException {
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                String label = meta.getColumnLabel(i);
+                if (label.equalsIgnoreCase("Seconds_Behind_Master") || label.equalsIgnoreCase("Seconds_Behind_Source")) return i;
+            }
+            throw new SQLException("Replica status has no Seconds_Behind_Master column");
+        }
+
+        static String describe() {
+            if (REPLICAS.isEmpty()) return "Read routing: no replicas configured, all reads on the primary";
+            StringBuilder sb = new StringBuilder("Read routing:");
+            for (Replica replica : REPLICAS) {
+                sb.append(' ').append(replica.url.replaceFirst("\\?.*", "")).append(" (")
+                        .append(replica.usable ? "" : "skipped, ").append(replica.state).append(')');
+            }
+            return sb.append(String.format(", reads replica=%d primary=%d sticky=%d",
+                    replicaReads.sum(), primaryReads.sum(), stickyReads.sum())).toString();
+        }
+    }
+
+    // --------- ASYNC DATA ACCESS ---------
+    // Runs JDBC work off the EDT and hands results back to it. Requests submitted under the
+    // same key supersede each other: only the newest one delivers its result. Long-running jobs
+    // (chunked deletes, archiving, imports, exports) get a few threads of their own, so they neither
+    // hold the RUNNING permits nor queue up ahead of the short reads behind the UI.
+    static class DataAccess {
+        private static final Logger LOG = Logger.getLogger(DataAccess.class.getName());
+        private static final int MAX_CONCURRENCY = Integer.getInteger("ce.async.maxConcurrency", 8);
+        private static final int JOB_THREADS = Integer.getInteger("ce.async.jobThreads", 2);
+        private static final ExecutorService EXECUTOR = newExecutor();
+        private static final ExecutorService JOBS = newJobExecutor();
+        private static final Semaphore RUNNING = new Semaphore(MAX_CONCURRENCY);
+        private static final Map<Object, Task<?>> latest = new ConcurrentHashMap<>();
+
+        // Must be called on the EDT; callbacks are also invoked on the EDT
+        static <T> void submit(Object key, LoadingUI loading, Callable<T> query,
+                               Consumer<? super T> onSuccess, Consumer<? super Exception> onError) {
+            Task<T> task = new Task<>(key, loading, query, onSuccess, onError, true);
+            if (key != null) {
+                Task<?> previous = latest.put(key, task);
+                if (previous != null) previous.cancelled = true;
+            }
+            if (loading != null) loading.start();
+            try {
+                EXECUTOR.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.finish(null, new SQLTransientException("Too many pending database requests, try again"));
+            }
+        }
+
+        // Drops the result of the pending request under this key, if any
+        static void cancel(Object key) {
+            Task<?> task = latest.remove(key);
+            if (task != null) task.cancelled = true;
+        }
+
+        // Fire-and-forget work that must not run on the EDT. Returns false, instead of throwing on the
+        // caller's thread, when the platform-thread fallback's queue is full and the work was dropped.
+        static boolean background(Runnable work) {
+            try {
+                EXECUTOR.execute(work);
+                return true;
+            } catch (RejectedExecutionException e) {
+                LOG.log(Level.WARNING, "Too many pending database requests, background work dropped", e);
+                return false;
+            }
+        }
+
+        // Must be called on the EDT; runs on the job threads, queued behind earlier jobs when they are busy
+        static <T> void submitJob(Callable<T> job, Consumer<? super T> onSuccess, Consumer<? super Exception> onError) {
+            JOBS.execute(new Task<>(null, null, job, onSuccess, onError, false));
+        }
+
+        static void backgroundJob(Runnable work) {
+            JOBS.execute(work);
+        }
+
+        private static ExecutorService newExecutor() {
+            try {
+                Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) virtual.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // Platform threads on runtimes without virtual threads
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_CONCURRENCY, MAX_CONCURRENCY, 30, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(256), r -> {
+                            Thread t = new Thread(r, "data-access");
+                            t.setDaemon(true);
+                            return t;
+                        });
+                pool.allowCoreThreadTimeOut(true);
+                return pool;
+            }
+        }
+
+        private static ExecutorService newJobExecutor() {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(JOB_THREADS, JOB_THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "data-access-job");
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+
+        private static class Task<T> implements Runnable {
+            final Object key;
+            final LoadingUI loading;
+            final Callable<T> query;
+            final Consumer<? super T> onSuccess;
+            final Consumer<? super Exception> onError;
+            final boolean limited; // takes a RUNNING permit
+            volatile boolean cancelled;
+
+            Task(Object key, LoadingUI loading, Callable<T> query, Consumer<? super T> onSuccess, Consumer<? super Exception> onError,
+                 boolean limited) {
+                this.key = key;
+                this.loading = loading;
+                this.query = query;
+                this.onSuccess = onSuccess;
+                this.onError = onError;
+                this.limited = limited;
+            }
+
+            @Override
+            public void run() {
+                if (cancelled) {
+                    finish(null, null);
+                    return;
+                }
+                boolean acquired = false;
+                try {
+                    if (limited) {
+                        RUNNING.acquire();
+                        acquired = true;
+                    }
+                    if (cancelled) {
+                        finish(null, null);
+                        return;
+                    }
+                    finish(query.call(), null);
+                } catch (Exception e) {
+                    finish(null, e);
+                } finally {
+                    if (acquired) RUNNING.release();
+                }
+            }
+
+            void finish(T result, Exception error) {
+                SwingUtilities.invokeLater(() -> {
+                    if (loading != null) loading.stop();
+                    if (key != null) latest.remove(key, this);
+                    if (cancelled) return;
+                    if (error != null) onError.accept(error);
+                    else onSuccess.accept(result);
+                });
+            }
+        }
+    }
+
+    // Paints a non-blocking "Loading..." overlay over a table while requests are pending
+    static class LoadingUI extends LayerUI<JComponent> {
+        private int pending;
+
+        void start() {
+            if (pending++ == 0) firePropertyChange("loading", false, true);
+        }
+
+        void stop() {
+            if (pending > 0 && --pending == 0) firePropertyChange("loading", true, false);
+        }
+
+        @Override
+        public void paint(Graphics g, JComponent c) {
+            super.paint(g, c);
+            if (pending == 0) return;
+
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setColor(new Color(255, 255, 255, 150));
+            g2.fillRect(0, 0, c.getWidth(), c.getHeight());
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setFont(new Font("Segoe UI", Font.BOLD, 14));
+            g2.setColor(new Color(59, 130, 246));
+            String text = "Loading...";
+            FontMetrics fm = g2.getFontMetrics();
+            g2.drawString(text, (c.getWidth() - fm.stringWidth(text)) / 2, c.getHeight() / 2);
+            g2.dispose();
+        }
+
+        @Override
+        public void applyPropertyChange(PropertyChangeEvent evt, JLayer<? extends JComponent> layer) {
+            if ("loading".equals(evt.getPropertyName())) layer.repaint();
+        }
+    }
+
+    // --------- INCREMENTAL SEARCH ---------
+    // Debounces keystrokes, cancels the running statement when the text changes, and narrows the
+    // previous result in memory when the new query only extends the old one.
+    static class SearchPipeline {
+        private static final int DEBOUNCE_MS = Integer.getInteger("ce.search.debounceMs", 250);
+        static final int MAX_ROWS = Integer.getInteger("ce.search.maxRows", 1000);
+
+        interface StatementFactory {
+            PreparedStatement prepare(Connection conn, String query) throws SQLException;
+        }
+
+        interface RowReader {
+            List<Object[]> read(ResultSet rs) throws SQLException;
+        }
+
+        interface RowMatcher {
+            boolean matches(Object[] row, String query);
+        }
+
+        private final JTextField field;
+        private final Object key;
+        private final LoadingUI loading;
+        private final StatementFactory factory;
+        private final RowReader reader;
+        private final RowMatcher matcher;
+        private final Consumer<List<Object[]>> onResults;
+        private final Runnable onCleared;
+        private final Consumer<Exception> onError;
+        private final int maxRows;
+        private final Timer debounce;
+        private final AtomicReference<Statement> running = new AtomicReference<>();
+
+        // Last result and the query that produced it; lastRows is null when it was truncated (EDT only)
+        private String lastQuery;
+        private List<Object[]> lastRows;
+
+        SearchPipeline(JTextField field, Object key, LoadingUI loading, StatementFactory factory, RowReader reader,
+                       RowMatcher matcher, Consumer<List<Object[]>> onResults, Runnable onCleared, Consumer<Exception> onError) {
+            this(field, key, loading, factory, reader, matcher, onResults, onCleared, onError, MAX_ROWS);
+        }
+
+        SearchPipeline(JTextField field, Object key, LoadingUI loading, StatementFactory factory, RowReader reader,
+                       RowMatcher matcher, Consumer<List<Object[]>> onResults, Runnable onCleared, Consumer<Exception> onError, int maxRows) {
+            this.field = field;
+            this.key = key;
+            this.loading = loading;
+            this.factory = factory;
+            this.reader = reader;
+            this.matcher = matcher;
+            this.onResults = onResults;
+            this.onCleared = onCleared;
+            this.onError = onError;
+            this.maxRows = maxRows;
+
+            debounce = new Timer(DEBOUNCE_MS, e -> search(currentQuery()));
+            debounce.setRepeats(false);
+            field.getDocument().addDocumentListener(new DocumentListener() {
+                public void changedUpdate(DocumentEvent e) { textChanged(); }
+                public void removeUpdate(DocumentEvent e) { textChanged(); }
+                public void insertUpdate(DocumentEvent e) { textChanged(); }
+            });
+        }
+
+        boolean isFiltering() {
+            return !currentQuery().isEmpty();
+        }
+
+        // Drops the cached result used for in-memory narrowing, e.g. after a row changed
+        void forget() {
+            lastRows = null;
+        }
+
+        // Forgets the cached result and runs the current query again, e.g. after the data changed
+        void refresh() {
+            lastRows = null;
+            search(currentQuery());
+        }
+
+        // Drops the pending search for text the program just put in the field, e.g. a chosen suggestion
+        void skip() {
+            debounce.stop();
+            DataAccess.cancel(key);
+            lastQuery = currentQuery();
+            lastRows = null;
+        }
+
+        private String currentQuery() {
+            return field.getText().toLowerCase().trim();
+        }
+
+        private void textChanged() {
+            Statement stmt = running.getAndSet(null);
+            if (stmt != null) {
+                DataAccess.cancel(key);
+                DataAccess.background(() -> {
+                    try {
+                        stmt.cancel();
+                    } catch (SQLException ignored) {}
+                });
+            }
+            debounce.restart();
+        }
+
+        private void search(String query) {
+            if (query.isEmpty()) {
+                lastQuery = query;
+                lastRows = null;
+                onCleared.run();
+                return;
+            }
+            SearchEvent event = new SearchEvent();
+            event.begin();
+            event.table = key instanceof PagedTableModel ? ((PagedTableModel) key).name() : key.getClass().getSimpleName();
+            event.query = query;
+            if (lastRows != null && query.startsWith(lastQuery)) {
+                List<Object[]> narrowed = new ArrayList<>();
+                for (Object[] row : lastRows) {
+                    if (matcher.matches(row, query)) narrowed.add(row);
+                }
+                DataAccess.cancel(key);
+                lastQuery = query;
+                lastRows = narrowed;
+                onResults.accept(narrowed);
+                event.results = narrowed.size();
+                event.inMemory = true;
+                event.commit();
+                return;
+            }
+
+            DataAccess.submit(key, loading, () -> {
+                try (Connection conn = ReadRouting.connect(key);
+                     PreparedStatement ps = factory.prepare(conn, query)) {
+                    ps.setMaxRows(maxRows + 1);
+                    running.set(ps);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return distinctById(reader.read(rs));
+                    } finally {
+                        running.compareAndSet(ps, null);
+                    }
+                }
+            }, rows -> {
+                boolean truncated = rows.size() > maxRows;
+                if (truncated) rows = new ArrayList<>(rows.subList(0, maxRows));
+                lastQuery = query;
+                lastRows = truncated ? null : rows;
+                onResults.accept(rows);
+                event.results = rows.size();
+                event.truncated = truncated;
+                event.commit();
+            }, onError);
+        }
+    }
+
+    // InnoDB FULLTEXT leaves out words shorter than innodb_ft_min_token_size and its default stopwords, both
+    // in the index and in queries, so names such as Ng, Li or "de la Cruz" cannot be found through it
+    private static final int FT_MIN_TOKEN_SIZE = Integer.getInteger("ce.search.ftMinTokenSize", 3);
+    private static final Set<String> FT_STOPWORDS = Set.of("a", "about", "an", "are", "as", "at", "be", "by", "com", "de", "en",
+            "for", "from", "how", "i", "in", "is", "it", "la", "on", "or", "that", "the", "this", "to", "was", "what", "when",
+            "where", "who", "will", "with", "und", "www");
+
+    static boolean fullTextIndexed(String word) {
+        return word.length() >= FT_MIN_TOKEN_SIZE && !FT_STOPWORDS.contains(word);
+    }
+
+    // Turns free text into a MySQL boolean-mode query requiring every indexed word as a prefix: "ann sm" -> "+ann*"
+    static String booleanPrefixQuery(String query) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : searchWords(query)) {
+            if (!fullTextIndexed(word)) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append('+').append(word).append('*');
+        }
+        return sb.toString();
+    }
+
+    // The name half of a search, or null when the query has no words: every word must start a word of the
+    // columns, as in matchesSearch. Indexed words go through the FULLTEXT index and rank the rows; the others
+    // are matched with a word-start REGEXP. Adds the values for its placeholders to params.
+    static String nameSearch(String table, String alias, String query, List<String> params, String... columns) {
+        String words = booleanPrefixQuery(query);
+        String score = "0";
+        List<String> conditions = new ArrayList<>();
+        if (!words.isEmpty()) {
+            score = "MATCH(" + String.join(", ", columns) + ") AGAINST (? IN BOOLEAN MODE)";
+            conditions.add(score);
+            params.add(words);
+            params.add(words);
+        }
+        for (String word : searchWords(query)) {
+            if (fullTextIndexed(word)) continue;
+            List<String> anyColumn = new ArrayList<>();
+            for (String column : columns) {
+                anyColumn.add(column + " REGEXP ?");
+                params.add("(^|[^[:alnum:]])" + word); // searchWords leaves only letters and digits
+            }
+            conditions.add("(" + String.join(" OR ", anyColumn) + ")");
+        }
+        if (conditions.isEmpty()) return null;
+        return "SELECT " + alias + ".*, 2 AS tier, " + score + " AS score FROM " + table + " " + alias + " WHERE " + String.join(" AND ", conditions);
+    }
+
+    // Escapes LIKE wildcards so the key column is matched as a plain, index-friendly prefix
+    static String likePrefix(String query) {
+        return query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    static String[] searchWords(String text) {
+        String cleaned = text.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        return cleaned.isEmpty() ? new String[0] : cleaned.split(" ");
+    }
+
+    // In-memory equivalent of the search queries: the key column starts with the query, or every
+    // query word is a prefix of some word in the text columns. Query is already lower case.
+    static boolean matchesSearch(Object[] row, String query, int keyColumn, int... textColumns) {
+        Object key = row[keyColumn];
+        if (key != null && key.toString().toLowerCase().startsWith(query)) return true;
+
+        String[] wanted = searchWords(query);
+        if (wanted.length == 0) return false;
+        List<String> words = new ArrayList<>();
+        for (int column : textColumns) {
+            if (row[column] != null) words.addAll(Arrays.asList(searchWords(row[column].toString())));
+        }
+        for (String prefix : wanted) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    // A row can be both a key hit and a text hit; keep its first (best ranked) occurrence
+    static List<Object[]> distinctById(List<Object[]> rows) {
+        Set<Object> seen = new HashSet<>();
+        List<Object[]> distinct = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (seen.add(row[0])) distinct.add(row);
+        }
+        return distinct;
+    }
+
+    // --------- ENTITY PICKER ---------
+    // Typeahead over students or courses: suggestions come from the same prefix/FULLTEXT search the
+    // management panels use, capped at a handful of rows, instead of loading every row into a combo box.
+    static class EntityPicker extends JPanel {
+        private static final int MAX_SUGGESTIONS = Integer.getInteger("ce.picker.maxSuggestions", 20);
+
+        static final class Choice {
+            final int id;
+            final String code;
+            final String name;
+
+            Choice(int id, String code, String name) {
+                this.id = id;
+                this.code = code;
+                this.name = name;
+            }
+
+            @Override
+            public String toString() {
+                return code + " - " + name;
+            }
+        }
+
+        private final JTextField field = new JTextField(22);
+        private final DefaultListModel<Choice> suggestions = new DefaultListModel<>();
+        private final JList<Choice> list = new JList<>(suggestions);
+        private final JPopupMenu popup = new JPopupMenu();
+        private final Function<Object[], Choice> toChoice;
+        private final List<Consumer<Choice>> listeners = new ArrayList<>();
+        private final SearchPipeline search;
+        private Choice selected;
+        private boolean settingText;
+
+        static EntityPicker students() {
+            return new EntityPicker("students", StudentPanel::prepareSearch, StudentPanel::readStudents,
+                    (r, query) -> matchesSearch(r, query, 1, 2, 3, 4), EntityPicker::studentChoice);
+        }
+
+        static EntityPicker courses() {
+            return new EntityPicker("courses", CoursePanel::prepareSearch, CoursePanel::readCourses,
+                    (r, query) -> matchesSearch(r, query, 1, 2), EntityPicker::courseChoice);
+        }
+
+        static Choice studentChoice(Object[] r) {
+            return new Choice((int) r[0], (String) r[1], r[2] + " " + r[3]);
+        }
+
+        static Choice courseChoice(Object[] r) {
+            return new Choice((int) r[0], (String) r[1], (String) r[2]);
+        }
+
+        private EntityPicker(String what, SearchPipeline.StatementFactory factory, SearchPipeline.RowReader reader,
+                             SearchPipeline.RowMatcher matcher, Function<Object[], Choice> toChoice) {
+            super(new BorderLayout());
+            this.toChoice = toChoice;
+            setOpaque(false);
+            field.setToolTipText("Type an ID, code or name to search " + what);
+            add(field, BorderLayout.CENTER);
+
+            list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+            list.setFocusable(false);
+            JScrollPane scroll = new JScrollPane(list);
+            scroll.setBorder(null);
+            popup.setFocusable(false);
+            popup.add(scroll);
+
+            search = new SearchPipeline(field, this, null, factory, reader, matcher, this::showSuggestions,
+                    () -> popup.setVisible(false),
+                    e -> JOptionPane.showMessageDialog(this, "Error searching " + what + ": " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE),
+                    MAX_SUGGESTIONS);
+
+            // Typing over a chosen entry means nothing is chosen until a suggestion is picked again
+            field.getDocument().addDocumentListener(new DocumentListener() {
+                public void changedUpdate(DocumentEvent e) { edited(); }
+                public void removeUpdate(DocumentEvent e) { edited(); }
+                public void insertUpdate(DocumentEvent e) { edited(); }
+            });
+            field.addKeyListener(new KeyAdapter() {
+                public void keyPressed(KeyEvent e) {
+                    if (!popup.isVisible()) return;
+                    int index = list.getSelectedIndex();
+                    switch (e.getKeyCode()) {
+                        case KeyEvent.VK_DOWN -> moveTo(Math.min(index + 1, suggestions.size() - 1));
+                        case KeyEvent.VK_UP -> moveTo(Math.max(index - 1, 0));
+                        case KeyEvent.VK_ENTER -> {
+                            if (index >= 0) choose(suggestions.get(index));
+                        }
+                        case KeyEvent.VK_ESCAPE -> popup.setVisible(false);
+                        default -> {
+                            return;
+                        }
+                    }
+                    e.consume();
+                }
+            });
+            field.addFocusListener(new FocusAdapter() {
+                public void focusLost(FocusEvent e) {
+                    popup.setVisible(false);
+                }
+            });
+            list.addMouseListener(new MouseAdapter() {
+                public void mouseClicked(MouseEvent e) {
+                    int index = list.locationToIndex(e.getPoint());
+                    if (index >= 0) choose(suggestions.get(index));
+                }
+            });
+        }
+
+        Choice getSelected() {
+            return selected;
+        }
+
+        void addChoiceListener(Consumer<Choice> listener) {
+            listeners.add(listener);
+        }
+
+        void clear() {
+            setSelected(null);
+        }
+
+        // Keeps the chosen entry current when the row behind it was edited (choice) or deleted (null)
+        void refresh(int id, Choice choice) {
+            if (selected != null && selected.id == id) setSelected(choice);
+        }
+
+        private void edited() {
+            if (!settingText) selected = null;
+        }
+
+        private void moveTo(int index) {
+            list.setSelectedIndex(index);
+            list.ensureIndexIsVisible(index);
+        }
+
+        private void showSuggestions(List<Object[]> rows) {
+            // A late result for text the user has already moved past
+            if (selected != null || !field.isFocusOwner()) return;
+            suggestions.clear();
+            for (Object[] r : rows) suggestions.addElement(toChoice.apply(r));
+            if (suggestions.isEmpty()) {
+                popup.setVisible(false);
+                return;
+            }
+            list.setVisibleRowCount(Math.min(suggestions.size(), 8));
+            list.setSelectedIndex(0);
+            popup.setPreferredSize(null);
+            Dimension size = popup.getPreferredSize();
+            popup.setPreferredSize(new Dimension(Math.max(size.width, field.getWidth()), size.height));
+            if (popup.isVisible()) popup.pack();
+            else popup.show(field, 0, field.getHeight());
+        }
+
+        private void choose(Choice choice) {
+            popup.setVisible(false);
+            setSelected(choice);
+            for (Consumer<Choice> listener : listeners) listener.accept(choice);
+        }
+
+        private void setSelected(Choice choice) {
+            selected = choice;
+            settingText = true;
+            try {
+                field.setText(choice == null ? "" : choice.toString());
+            } finally {
+                settingText = false;
+            }
+            search.skip();
+        }
+    }
+
+    // --------- PAGED TABLE MODEL ---------
+    // Fetches rows on demand, one keyset page at a time, as the table asks for them. Only a bounded
+    // number of pages is kept; the last row of every page seen is remembered so any later page can
+    // be fetched with a keyset query instead of a growing OFFSET.
+    static class PagedTableModel extends AbstractTableModel {
+        static final int PAGE_SIZE = Integer.getInteger("ce.table.pageSize", 100);
+        private static final int MAX_PAGES = Integer.getInteger("ce.table.cachedPages", 20);
+        private static final long PREFETCH_MAX_AGE_MS = Long.getLong("ce.table.prefetchMaxAgeMs", 30_000);
+        // First pages fetched before their panel exists, taken by the first reload() of that source
+        private static final Map<Class<?>, Prefetched> PREFETCHED = new ConcurrentHashMap<>();
+
+        interface PageSource {
+            int count(Connection conn) throws SQLException;
+
+            // Rows following 'after' in sort order, or starting at 'offset' when no boundary row is known
+            List<Object[]> page(Connection conn, Object[] after, int offset, int limit) throws SQLException;
+
+            // Index the row has, or would have, in the listing: the number of rows sorting before it
+            int position(Connection conn, Object[] row) throws SQLException;
+
+            // Columns whose values repeat across many rows, stored dictionary-encoded
+            default int[] repeatingColumns() {
+                return new int[0];
+            }
+        }
+
+        private final String[] columns;
+        private final PageSource source;
+        private final LoadingUI loading;
+        private final Consumer<Exception> onError;
+        private final ColumnStore.Dictionary[] dictionaries;
+        private final Map<Integer, ColumnStore> pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ColumnStore> eldest) {
+                return size() > MAX_PAGES;
+            }
+        };
+        private final Map<Integer, Object[]> lastRowOfPage = new HashMap<>();
+        private final Set<Integer> pending = new HashSet<>();
+        private ColumnStore rows; // a fully materialized result, e.g. search hits
+        private int rowCount;
+        private int generation; // bumped when the whole content is replaced
+        private int pageEpoch;  // bumped when cached pages are dropped, so late pages are ignored
+
+        PagedTableModel(String[] columns, PageSource source, LoadingUI loading, Consumer<Exception> onError) {
+            this.columns = columns;
+            this.source = source;
+            this.loading = loading;
+            this.onError = onError;
+            dictionaries = ColumnStore.dictionaries(columns.length, source.repeatingColumns());
+        }
+
+        // Switches to the paged listing: a cheap count plus the first page, the rest on demand
+        void reload() {
+            int gen = ++generation;
+            TableLoadEvent event = new TableLoadEvent();
+            event.begin();
+            Prefetched prefetched = PREFETCHED.remove(source.getClass());
+            DataAccess.submit(this, loading, () -> {
+                if (prefetched != null && System.currentTimeMillis() - prefetched.startedAt < PREFETCH_MAX_AGE_MS) {
+                    try {
+                        return prefetched.page.get();
+                    } catch (ExecutionException e) {
+                        // fetch again below
+                    }
+                }
+                return firstPage(source, this);
+            }, first -> {
+                if (gen != generation) return;
+                clearPages();
+                rows = null;
+                rowCount = first.count;
+                putPage(0, first.rows);
+                fireTableDataChanged();
+                event.table = name();
+                event.rows = first.rows.size();
+                event.totalRows = first.count;
+                event.commit();
+                Startup.firstPageShown(name());
+            }, onError);
+        }
+
+        // Starts loading the first page of a listing whose panel has not been built yet
+        static void prefetch(PageSource source) {
+            CompletableFuture<FirstPage> page = new CompletableFuture<>();
+            PREFETCHED.put(source.getClass(), new Prefetched(page));
+            boolean started = DataAccess.background(() -> {
+                try {
+                    page.complete(firstPage(source, null));
+                } catch (Exception e) {
+                    page.completeExceptionally(e);
+                }
+            });
+            if (!started) page.completeExceptionally(new SQLTransientException("Prefetch dropped")); // reload() fetches again
+        }
+
+        private static FirstPage firstPage(PageSource source, Object scope) throws SQLException {
+            try (Connection conn = ReadRouting.connect(scope)) {
+                int count = source.count(conn);
+                return new FirstPage(count, source.page(conn, null, 0, PAGE_SIZE));
+            }
+        }
+
+        // Shows an already materialized result instead of the paged listing
+        void setRows(List<Object[]> rows) {
+            generation++;
+            DataAccess.cancel(this);
+            clearPages();
+            this.rows = ColumnStore.of(rows, dictionaries);
+            fireTableDataChanged();
+        }
+
+        boolean isPaged() {
+            return rows == null;
+        }
+
+        // e.g. "StudentPages", for diagnostics
+        String name() {
+            return source.getClass().getSimpleName();
+        }
+
+        // Row-level deltas: only the affected row fires a table event. In the paged listing the cached
+        // pages from the changed position on are dropped and refetched when they are next shown.
+        void insertRow(int index, Object[] row) {
+            if (rows != null) {
+                rows.insert(index, row);
+            } else {
+                rowCount++;
+                dropPagesFrom(index / PAGE_SIZE);
+            }
+            fireTableRowsInserted(index, index);
+        }
+
+        // The row's sort key must be unchanged; otherwise delete and insert it again
+        void updateRow(int index, Object[] row) {
+            if (rows != null) {
+                rows.set(index, row);
+            } else {
+                ColumnStore loaded = pages.get(index / PAGE_SIZE);
+                if (loaded != null && index % PAGE_SIZE < loaded.size()) loaded.set(index % PAGE_SIZE, row);
+            }
+            fireTableRowsUpdated(index, index);
+        }
+
+        void deleteRow(int index) {
+            if (rows != null) {
+                rows.remove(index);
+            } else {
+                rowCount--;
+                dropPagesFrom(index / PAGE_SIZE);
+            }
+            fireTableRowsDeleted(index, index);
+        }
+
+        // Replaces every loaded row for which patch returns a new row; unloaded rows are fetched fresh anyway
+        void patchRows(UnaryOperator<Object[]> patch) {
+            if (rows != null) {
+                for (int i = 0; i < rows.size(); i++) {
+                    Object[] patched = patch.apply(rows.row(i));
+                    if (patched != null) updateRow(i, patched);
+                }
+                return;
+            }
+            for (Map.Entry<Integer, ColumnStore> entry : new ArrayList<>(pages.entrySet())) {
+                ColumnStore loaded = entry.getValue();
+                for (int i = 0; i < loaded.size(); i++) {
+                    Object[] patched = patch.apply(loaded.row(i));
+                    if (patched != null) updateRow(entry.getKey() * PAGE_SIZE + i, patched);
+                }
+            }
+        }
+
+        // Whether the loaded row at index still has this id in column 0
+        boolean hasIdAt(int index, int id) {
+            if (index < 0 || index >= getRowCount()) return false;
+            if (rows != null) return rows.id(index) == id;
+            ColumnStore loaded = pages.get(index / PAGE_SIZE);
+            return loaded != null && index % PAGE_SIZE < loaded.size() && loaded.id(index % PAGE_SIZE) == id;
+        }
+
+        private void dropPagesFrom(int page) {
+            pages.keySet().removeIf(p -> p >= page);
+            lastRowOfPage.keySet().removeIf(p -> p >= page);
+            pending.clear();
+            pageEpoch++;
+        }
+
+        // The row if it is loaded; otherwise schedules its page and returns null
+        Object[] getRow(int row) {
+            ColumnStore loaded = storeOf(row);
+            int index = rows != null ? row : row % PAGE_SIZE;
+            return loaded != null && index < loaded.size() ? loaded.row(index) : null;
+        }
+
+        // The materialized result, or the row's page when it is loaded (scheduling it otherwise)
+        private ColumnStore storeOf(int row) {
+            if (rows != null) return rows;
+            int page = row / PAGE_SIZE;
+            ColumnStore loaded = pages.get(page);
+            if (loaded == null) requestPage(page);
+            return loaded;
+        }
+
+        // Heap used by the loaded rows, e.g. for the benchmark's memory comparison
+        long footprintBytes() {
+            long bytes = rows != null ? rows.footprintBytes() : 0;
+            for (ColumnStore loaded : pages.values()) bytes += loaded.footprintBytes();
+            return bytes;
+        }
+
+        private void requestPage(int page) {
+            if (!pending.add(page)) return;
+            int epoch = pageEpoch;
+            Object[] after = page == 0 ? null : lastRowOfPage.get(page - 1);
+            int offset = page * PAGE_SIZE;
+            TableLoadEvent event = new TableLoadEvent();
+            event.begin();
+            DataAccess.submit(null, loading, () -> {
+                try (Connection conn = ReadRouting.connect(this)) {
+                    return source.page(conn, after, offset, PAGE_SIZE);
+                }
+            }, loaded -> {
+                if (epoch != pageEpoch) return;
+                pending.remove(page);
+                putPage(page, loaded);
+                int first = page * PAGE_SIZE;
+                int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                if (last >= first) fireTableRowsUpdated(first, last);
+                event.table = name();
+                event.page = page;
+                event.rows = loaded.size();
+                event.totalRows = rowCount;
+                event.commit();
+            }, e -> {
+                // The page stays pending so a failing query is not retried on every repaint
+                if (epoch == pageEpoch) onError.accept(e);
+            });
+        }
+
+        private void putPage(int page, List<Object[]> loaded) {
+            pages.put(page, ColumnStore.of(loaded, dictionaries));
+            if (!loaded.isEmpty()) lastRowOfPage.put(page, loaded.get(loaded.size() - 1));
+        }
+
+        private void clearPages() {
+            pages.clear();
+            lastRowOfPage.clear();
+            pending.clear();
+            pageEpoch++;
+            // Nothing refers to the old codes any more, so renamed or deleted values can go
+            for (ColumnStore.Dictionary dictionary : dictionaries) {
+                if (dictionary != null) dictionary.clear();
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows != null ? rows.size() : rowCount;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            // Read straight from the column; rendering a cell does not materialize its row
+            ColumnStore loaded = storeOf(rowIndex);
+            int index = rows != null ? rowIndex : rowIndex % PAGE_SIZE;
+            return loaded != null && index < loaded.size() ? loaded.get(index, columnIndex) : null;
+        }
+
+        // A written row together with its index in the paged listing
+        static class RowChange {
+            final Object[] row;
+            final int position;
+
+            RowChange(Object[] row, int position) {
+                this.row = row;
+                this.position = position;
+            }
+        }
+
+        private static class Prefetched {
+            final CompletableFuture<FirstPage> page;
+            final long startedAt = System.currentTimeMillis();
+
+            Prefetched(CompletableFuture<FirstPage> page) {
+                this.page = page;
+            }
+        }
+
+        private static class FirstPage {
+            final int count;
+            final List<Object[]> rows;
+
+            FirstPage(int count, List<Object[]> rows) {
+                this.count = count;
+                this.rows = rows;
+            }
+        }
+    }
+
+    // --------- COLUMN STORE ---------
+    // Table rows kept column by column: the id column as an int[], repeating values (course codes and
+    // names on enrollment rows) as int codes into a per-table dictionary, and every other column as one
+    // Object[]. A row costs no Object[] of its own and no boxed id; rows are only built when asked for.
+    static class ColumnStore {
+        private final Dictionary[] dictionaries; // per column; null for plain columns
+        private final Object[] columns;          // per column from 1 on: int[] codes or Object[] values
+        private int[] ids;
+        private int size;
+
+        ColumnStore(Dictionary[] dictionaries, int capacity) {
+            this.dictionaries = dictionaries;
+            capacity = Math.max(capacity, 4);
+            ids = new int[capacity];
+            columns = new Object[dictionaries.length];
+            for (int c = 1; c < columns.length; c++) {
+                columns[c] = dictionaries[c] != null ? new int[capacity] : new Object[capacity];
+            }
+        }
+
+        static ColumnStore of(List<Object[]> rows, Dictionary[] dictionaries) {
+            ColumnStore store = new ColumnStore(dictionaries, rows.size());
+            for (Object[] row : rows) store.insert(store.size, row);
+            return store;
+        }
+
+        // One dictionary per repeating column, shared by every store of a table
+        static Dictionary[] dictionaries(int columnCount, int[] repeating) {
+            Dictionary[] dictionaries = new Dictionary[columnCount];
+            for (int column : repeating) dictionaries[column] = new Dictionary();
+            return dictionaries;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int id(int row) {
+            return ids[row];
+        }
+
+        Object get(int row, int column) {
+            if (column == 0) return ids[row];
+            Object values = columns[column];
+            return values instanceof int[] ? dictionaries[column].decode(((int[]) values)[row]) : ((Object[]) values)[row];
+        }
+
+        Object[] row(int row) {
+            Object[] values = new Object[columns.length];
+            for (int c = 0; c < values.length; c++) values[c] = get(row, c);
+            return values;
+        }
+
+        void insert(int index, Object[] row) {
+            if (size == ids.length) grow();
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            for (int c = 1; c < columns.length; c++) System.arraycopy(columns[c], index, columns[c], index + 1, size - index);
+            size++;
+            set(index, row);
+        }
+
+        void set(int index, Object[] row) {
+            ids[index] = (Integer) row[0];
+            for (int c = 1; c < columns.length; c++) {
+                if (dictionaries[c] != null) ((int[]) columns[c])[index] = dictionaries[c].encode(row[c]);
+                else ((Object[]) columns[c])[index] = row[c];
+            }
+        }
+
+        void remove(int index) {
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            for (int c = 1; c < columns.length; c++) System.arraycopy(columns[c], index + 1, columns[c], index, size - index - 1);
+            size--;
+            for (int c = 1; c < columns.length; c++) {
+                if (columns[c] instanceof Object[]) ((Object[]) columns[c])[size] = null;
+            }
+        }
+
+        // Approximate heap use of the arrays, assuming 16-byte array headers and compressed references.
+        // The values themselves are not counted: dictionary values are shared and the rest is per row anyway.
+        long footprintBytes() {
+            return 16 + columns.length * 4L + (long) columns.length * (16 + ids.length * 4L);
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            for (int c = 1; c < columns.length; c++) {
+                columns[c] = columns[c] instanceof int[] ? Arrays.copyOf((int[]) columns[c], capacity) : Arrays.copyOf((Object[]) columns[c], capacity);
+            }
+        }
+
+        // Distinct values of a column; a value is stored once however many rows show it. EDT only.
+        static final class Dictionary {
+            private final Map<Object, Integer> codes = new HashMap<>();
+            private final List<Object> values = new ArrayList<>();
+
+            int encode(Object value) {
+                if (value == null) return -1;
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = values.size();
+                    codes.put(value, code);
+                    values.add(value);
+                }
+                return code;
+            }
+
+            Object decode(int code) {
+                return code < 0 ? null : values.get(code);
+            }
+
+            int size() {
+                return values.size();
+            }
+
+            void clear() {
+                codes.clear();
+                values.clear();
+            }
+        }
+    }
+
+    // --------- CSV IMPORT ---------
+    // Streams a CSV file into one table. Records are validated and converted by a Target, then written
+    // in executeBatch chunks, one short transaction per chunk. A chunk the database rejects is rolled
+    // back and replayed row by row so only the offending rows are reported.
+    static class CsvImporter {
+        private static final int BATCH_SIZE = Integer.getInteger("ce.import.batchSize", 1000);
+
+        interface Target {
+            // Expected header names, in statement parameter order
+            String[] columns();
+
+            // Loads whatever lookups convert() needs, e.g. natural key to id maps
+            void begin(Connection conn) throws SQLException;
+
+            // Statement parameters for one record; throws IllegalArgumentException with the reject reason
+            Object[] convert(String[] record);
+        }
+
+        // A target whose rows go in with a plain INSERT
+        interface InsertTarget extends Target {
+            String insertSql();
+        }
+
+        // A target whose rows go through application code (seat limits, say) instead
+        interface ChunkTarget extends Target {
+            // Writes the chunk in one transaction; returns a reject reason per row, null for rows written
+            String[] write(Connection conn, List<Object[]> chunk) throws SQLException;
+        }
+
+        static class Progress {
+            final long rows, inserted, rejected, bytesRead, elapsedMillis;
+
+            Progress(long rows, long inserted, long rejected, long bytesRead, long elapsedMillis) {
+                this.rows = rows;
+                this.inserted = inserted;
+                this.rejected = rejected;
+                this.bytesRead = bytesRead;
+                this.elapsedMillis = elapsedMillis;
+            }
+
+            long rowsPerSecond() {
+                return elapsedMillis == 0 ? rows : rows * 1000 / elapsedMillis;
+            }
+        }
+
+        static class Reject {
+            final long row;
+            final String reason;
+            final String[] record;
+
+            Reject(long row, String reason, String[] record) {
+                this.row = row;
+                this.reason = reason;
+                this.record = record;
+            }
+        }
+
+        private final Target target;
+        private final Consumer<Progress> onProgress;
+        private final BooleanSupplier cancelled;
+        private final List<Reject> rejects = new ArrayList<>();
+        private final long start = System.currentTimeMillis();
+        private long rows, inserted;
+        private CountingInputStream counter;
+
+        CsvImporter(Target target, Consumer<Progress> onProgress, BooleanSupplier cancelled) {
+            this.target = target;
+            this.onProgress = onProgress;
+            this.cancelled = cancelled;
+        }
+
+        // Lets the user pick a file, imports it in the background with a cancellable progress monitor,
+        // then shows a summary and writes rejected rows next to the input file
+        static void importFile(Component parent, String what, Target target, Runnable onDone) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Import " + what + " from CSV");
+            if (chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+            Path file = chooser.getSelectedFile().toPath();
+
+            ProgressMonitor monitor = new ProgressMonitor(parent, "Importing " + what + " from " + file.getFileName(), "", 0, 1000);
+            monitor.setMillisToDecideToPopup(200);
+            AtomicBoolean cancelled = new AtomicBoolean();
+            long size = Math.max(1, file.toFile().length());
+            CsvImporter importer = new CsvImporter(target, p -> SwingUtilities.invokeLater(() -> {
+                if (monitor.isCanceled()) cancelled.set(true);
+                monitor.setProgress((int) (p.bytesRead * 1000 / size));
+                monitor.setNote(String.format("%,d rows, %,d rejected (%,d rows/s)", p.rows, p.rejected, p.rowsPerSecond()));
+            }), cancelled::get);
+
+            DataAccess.submitJob(() -> {
+                Progress result = importer.run(file);
+                if (!importer.rejects.isEmpty()) importer.writeRejects(rejectsFile(file));
+                return result;
+            }, result -> {
+                monitor.close();
+                String message = String.format("%s %,d of %,d %s in %.1f s (%,d rows/s), %,d rejected.",
+                        cancelled.get() ? "Import cancelled after importing" : "Imported",
+                        result.inserted, result.rows, what, result.elapsedMillis / 1000.0, result.rowsPerSecond(), result.rejected);
+                if (result.rejected > 0) message += "\nRejected rows were written to " + rejectsFile(file);
+                JOptionPane.showMessageDialog(parent, message, "Import", result.rejected > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                onDone.run();
+            }, e -> {
+                monitor.close();
+                JOptionPane.showMessageDialog(parent, "Error importing " + what + ": " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                onDone.run();
+            });
+        }
+
+        private static Path rejectsFile(Path file) {
+            return file.resolveSibling(file.getFileName() + ".rejects.csv");
+        }
+
+        Progress run(Path file) throws IOException, SQLException {
+            try (CountingInputStream in = new CountingInputStream(Files.newInputStream(file));
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                counter = in;
+                CsvReader csv = new CsvReader(reader);
+                int[] positions = mapHeader(csv.next());
+
+                try (Connection conn = connectDB()) {
+                    target.begin(conn);
+                }
+
+                List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+                List<Long> batchRows = new ArrayList<>(BATCH_SIZE);
+                String[] fields;
+                while (!cancelled.getAsBoolean() && (fields = csv.next()) != null) {
+                    if (fields.length == 1 && fields[0].isBlank()) continue;
+                    rows++;
+                    String[] record = new String[positions.length];
+                    for (int i = 0; i < positions.length; i++) {
+                        record[i] = positions[i] < fields.length ? fields[positions[i]].trim() : "";
+                    }
+                    try {
+                        batch.add(target.convert(record));
+                        batchRows.add(rows);
+                    } catch (IllegalArgumentException e) {
+                        rejects.add(new Reject(rows, e.getMessage(), record));
+                    }
+                    if (batch.size() == BATCH_SIZE) {
+                        flush(batch, batchRows);
+                    }
+                }
+                flush(batch, batchRows);
+            }
+            return progress();
+        }
+
+        private int[] mapHeader(String[] header) throws IOException {
+            if (header == null) throw new IOException("The file is empty");
+            String[] columns = target.columns();
+            int[] positions = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                positions[i] = -1;
+                for (int j = 0; j < header.length; j++) {
+                    if (header[j].replace("\uFEFF", "").trim().equalsIgnoreCase(columns[i])) positions[i] = j;
+                }
+                if (positions[i] < 0) throw new IOException("Missing column " + columns[i] + " in the header row");
+            }
+            return positions;
+        }
+
+        private void flush(List<Object[]> batch, List<Long> batchRows) throws SQLException {
+            if (batch.isEmpty()) return;
+            if (target instanceof ChunkTarget) {
+                writeChunk((ChunkTarget) target, batch, batchRows);
+                return;
+            }
+            try (Connection conn = connectDB();
+                 PreparedStatement ps = conn.prepareStatement(((InsertTarget) target).insertSql())) {
+                conn.setAutoCommit(false);
+                try {
+                    for (Object[] params : batch) {
+                        bind(ps, params);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                    inserted += batch.size();
+                } catch (BatchUpdateException e) {
+                    conn.rollback();
+                    ps.clearBatch();
+                    insertOneByOne(conn, ps, batch, batchRows);
+                }
+            }
+            batch.clear();
+            batchRows.clear();
+            onProgress.accept(progress());
+        }
+
+        // On a failed chunk each row is retried alone, so one bad row only rejects itself
+        private void writeChunk(ChunkTarget chunkTarget, List<Object[]> batch, List<Long> batchRows) throws SQLException {
+            try (Connection conn = connectDB()) {
+                try {
+                    collect(chunkTarget.write(conn, batch), batchRows);
+                } catch (SQLException e) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        try {
+                            collect(chunkTarget.write(conn, Collections.singletonList(batch.get(i))), List.of(batchRows.get(i)));
+                        } catch (SQLException rowError) {
+                            rejects.add(new Reject(batchRows.get(i), rowError.getMessage(), null));
+                        }
+                    }
+                }
+            }
+            batch.clear();
+            batchRows.clear();
+            onProgress.accept(progress());
+        }
+
+        private void collect(String[] reasons, List<Long> batchRows) {
+            for (int i = 0; i < reasons.length; i++) {
+                if (reasons[i] == null) inserted++;
+                else rejects.add(new Reject(batchRows.get(i), reasons[i], null));
+            }
+        }
+
+        private void insertOneByOne(Connection conn, PreparedStatement ps, List<Object[]> batch, List<Long> batchRows) throws SQLException {
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    bind(ps, batch.get(i));
+                    ps.executeUpdate();
+                    conn.commit();
+                    inserted++;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    rejects.add(new Reject(batchRows.get(i), e.getMessage(), null));
+                }
+            }
+        }
+
+        private static void bind(PreparedStatement ps, Object[] params) throws SQLException {
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] == null) ps.setNull(i + 1, Types.VARCHAR);
+                else ps.setObject(i + 1, params[i]);
+            }
+        }
+
+        private Progress progress() {
+            return new Progress(rows, inserted, rejects.size(), counter.count, System.currentTimeMillis() - start);
+        }
+
+        private void writeRejects(Path file) throws IOException {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("row,reason,record");
+                out.newLine();
+                for (Reject reject : rejects) {
+                    out.write(reject.row + "," + CsvReader.quote(reject.reason) + ","
+                            + CsvReader.quote(reject.record == null ? "" : String.join(" | ", reject.record)));
+                    out.newLine();
+                }
+            }
+        }
+
+        static String required(String value, String column, int maxLength) {
+            if (value.isEmpty()) throw new IllegalArgumentException(column + " is required");
+            return optional(value, column, maxLength);
+        }
+
+        static String optional(String value, String column, int maxLength) {
+            if (value.length() > maxLength) throw new IllegalArgumentException(column + " is longer than " + maxLength + " characters");
+            return value.isEmpty() ? null : value;
+        }
+    }
+
+    // Minimal RFC 4180 reader: quoted fields, doubled quotes, and line breaks inside quotes
+    static class CsvReader {
+        private final BufferedReader in;
+
+        CsvReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        // The next record's fields, or null at end of input
+        String[] next() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false, any = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                        continue;
+                    }
+                    in.mark(1);
+                    if (in.read() == '"') {
+                        field.append('"');
+                    } else {
+                        in.reset();
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') in.reset();
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (!any) return null;
+            fields.add(field.toString());
+            return fields.toArray(new String[0]);
+        }
+
+        static String quote(String value) {
+            if (value == null) return "";
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    // --------- ENROLLMENT EXPORT ---------
+    // Streams one term's enrollment join to a file row by row, or on request the whole history: every
+    // live term plus enrollments_archive. The driver streams the result set and rows go straight to a
+    // buffered channel, so heap use does not depend on the number of rows.
+    static class EnrollmentExporter {
+        // Integer.MIN_VALUE makes Connector/J stream rows; use a positive size with useCursorFetch=true instead
+        private static final int FETCH_SIZE = Integer.getInteger("ce.export.fetchSize", Integer.MIN_VALUE);
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final String LIVE = "SELECT e.id AS enrollment_id, e.term, s.student_id, CONCAT(s.first_name, ' ', s.last_name) AS student_name, " +
+                                           "c.course_code, c.course_name, e.enrollment_date " +
+                                           "FROM enrollments e " +
+                                           "JOIN students s ON e.student_id = s.id " +
+                                           "JOIN courses c ON e.course_id = c.id ";
+        private static final String TERM_SQL = LIVE + "WHERE e.term = ? ORDER BY s.student_id, c.course_code";
+        // Archived rows carry the codes and names they had when archived
+        private static final String HISTORY_SQL = LIVE + "UNION ALL " +
+                                                  "SELECT id, term, student_code, student_name, course_code, course_name, enrollment_date " +
+                                                  "FROM enrollments_archive ORDER BY term, student_id, course_code";
+        private static final String[] COLUMNS = {"enrollment_id", "term", "student_id", "student_name", "course_code", "course_name", "enrollment_date"};
+
+        enum Format { CSV, NDJSON }
+
+        // Exports the given term (the active one when null) unless the user asks for every term instead.
+        // Format and compression follow the chosen file name: .csv or .ndjson/.jsonl, optionally ending in .gz
+        static void exportFile(Component parent, String term) {
+            String[] options = {term == null ? "Active term" : "Term " + term, "All terms, including archived"};
+            int scope = JOptionPane.showOptionDialog(parent, "Choose the enrollments to export:", "Export", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (scope < 0) return;
+            boolean history = scope == 1;
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Export enrollments");
+            chooser.setSelectedFile(new File(history ? "enrollments-all-terms.csv" : term == null ? "enrollments.csv" : "enrollments-" + term + ".csv"));
+            if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) return;
+            Path file = chooser.getSelectedFile().toPath();
+            String name = file.getFileName().toString().toLowerCase();
+            boolean gzip = name.endsWith(".gz");
+            String base = gzip ? name.substring(0, name.length() - 3) : name;
+            Format format = base.endsWith(".ndjson") || base.endsWith(".jsonl") || base.endsWith(".json") ? Format.NDJSON : Format.CSV;
+
+            ProgressMonitor monitor = new ProgressMonitor(parent, "Exporting enrollments to " + file.getFileName(), "", 0, 100);
+            monitor.setMillisToDecideToPopup(200);
+            AtomicBoolean cancelled = new AtomicBoolean();
+            long start = System.currentTimeMillis();
+            DataAccess.submitJob(() -> export(file, format, gzip, term, history, (written, total) -> SwingUtilities.invokeLater(() -> {
+                if (monitor.isCanceled()) cancelled.set(true);
+                monitor.setMaximum((int) Math.max(1, total));
+                monitor.setProgress((int) written);
+                monitor.setNote(String.format("%,d of %,d rows", written, total));
+            }), cancelled::get), written -> {
+                monitor.close();
+                if (cancelled.get()) {
+                    JOptionPane.showMessageDialog(parent, "Export cancelled.", "Export", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(parent, String.format("Exported %,d enrollments to %s in %.1f s.",
+                            written, file, (System.currentTimeMillis() - start) / 1000.0), "Export", JOptionPane.INFORMATION_MESSAGE);
+                }
+            }, e -> {
+                monitor.close();
+                JOptionPane.showMessageDialog(parent, "Error exporting enrollments: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+
+        interface ProgressListener {
+            void progress(long written, long total);
+        }
+
+        // With history set, exports every term and ignores 'term'; otherwise that term, or the active one when
+        // null. Returns the number of rows written; a cancelled export deletes the partial file.
+        static long export(Path file, Format format, boolean gzip, String term, boolean history, ProgressListener onProgress,
+                           BooleanSupplier cancelled) throws IOException, SQLException {
+            long written = 0;
+            boolean complete = false;
+            try (Connection conn = connectDB()) {
+                if (!history && term == null) term = Terms.active(conn);
+                long total;
+                try (PreparedStatement count = conn.prepareStatement(history
+                        ? "SELECT (SELECT COUNT(*) FROM enrollments) + (SELECT COUNT(*) FROM enrollments_archive)"
+                        : "SELECT COUNT(*) FROM enrollments WHERE term = ?")) {
+                    if (!history) count.setString(1, term);
+                    try (ResultSet rs = count.executeQuery()) {
+                        total = rs.next() ? rs.getLong(1) : 0;
+                    }
+                }
+                onProgress.progress(0, total);
+
+                try (Writer out = openWriter(file, gzip);
+                     PreparedStatement stmt = conn.prepareStatement(history ? HISTORY_SQL : TERM_SQL,
+                             ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    stmt.setFetchSize(FETCH_SIZE);
+                    if (!history) stmt.setString(1, term);
+                    if (format == Format.CSV) {
+                        out.write(String.join(",", COLUMNS));
+                        out.write('\n');
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (cancelled.getAsBoolean()) {
+                                // Closing a streaming result set drains it; cancel the query instead
+                                stmt.cancel();
+                                break;
+                            }
+                            if (format == Format.CSV) writeCsv(out, rs);
+                            else writeJson(out, rs);
+                            if (++written % 5_000 == 0) onProgress.progress(written, total);
+                        }
+                    } catch (SQLException e) {
+                        if (!cancelled.getAsBoolean()) throw e; // the cancelled query reports an interruption
+                    }
+                    complete = !cancelled.getAsBoolean();
+                    onProgress.progress(written, total);
+                }
+            } finally {
+                if (!complete) Files.deleteIfExists(file);
+            }
+            return written;
+        }
+
+        private static Writer openWriter(Path file, boolean gzip) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            OutputStream out = Channels.newOutputStream(channel);
+            if (gzip) out = new GZIPOutputStream(out, BUFFER_SIZE);
+            return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        private static void writeCsv(Writer out, ResultSet rs) throws IOException, SQLException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) out.write(',');
+                out.write(CsvReader.quote(rs.getString(i + 1)));
+            }
+            out.write('\n');
+        }
+
+        private static void writeJson(Writer out, ResultSet rs) throws IOException, SQLException {
+            out.write("{\"enrollment_id\":");
+            out.write(Integer.toString(rs.getInt(1)));
+            for (int i = 1; i < COLUMNS.length; i++) {
+                out.write(",\"");
+                out.write(COLUMNS[i]);
+                out.write("\":");
+                writeJsonString(out, rs.getString(i + 1));
+            }
+            out.write("}\n");
+        }
+
+        private static void writeJsonString(Writer out, String value) throws IOException {
+            if (value == null) {
+                out.write("null");
+                return;
+            }
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> out.write("\\\"");
+                    case '\\' -> out.write("\\\\");
+                    case '\n' -> out.write("\\n");
+                    case '\r' -> out.write("\\r");
+                    case '\t' -> out.write("\\t");
+                    default -> {
+                        if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                        else out.write(c);
+                    }
+                }
+            }
+            out.write('"');
+        }
+    }
+
+    // --------- QUERY METRICS ---------
+    // Every statement handed out by the connection pool is wrapped so its executions are timed. Statements
+    // are named after the code that prepared them (e.g. "StudentPages.page SELECT"), so each of the app's
+    // SQL strings gets its own latency histogram, row and error counts. Also published as JMX MBeans and,
+    // with ce.metrics.prometheusFile set, written periodically in Prometheus text format.
+    static class QueryMetrics {
+        private static final Logger LOG = Logger.getLogger(QueryMetrics.class.getName());
+        private static final boolean ENABLED = !Boolean.getBoolean("ce.metrics.disabled");
+        static final long SLOW_QUERY_MS = Long.getLong("ce.metrics.slowQueryMs", 500);
+        private static final int SLOW_LOG_SIZE = Integer.getInteger("ce.metrics.slowLogSize", 100);
+        private static final String PROMETHEUS_FILE = System.getProperty("ce.metrics.prometheusFile");
+        private static final long EXPORT_INTERVAL_MS = Long.getLong("ce.metrics.exportIntervalMs", 15_000);
+        private static final String JMX_DOMAIN = "course_enrollment";
+
+        // Time spent waiting for a pooled connection
+        static final Histogram ACQUIRE = new Histogram();
+        private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+        private static final Deque<String> SLOW = new ArrayDeque<>(); // guarded by itself
+
+        static {
+            register("type=ConnectionPool", new PoolStats());
+            if (PROMETHEUS_FILE != null) {
+                ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "metrics-exporter");
+                    t.setDaemon(true);
+                    return t;
+                });
+                exporter.scheduleWithFixedDelay(() -> {
+                    try {
+                        writePrometheus(Path.of(PROMETHEUS_FILE));
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "Could not write " + PROMETHEUS_FILE, e);
+                    }
+                }, EXPORT_INTERVAL_MS, EXPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        static Statement instrument(Statement stmt, String sql) {
+            if (!ENABLED) return stmt;
+            String site = callSite();
+            Class<?> type = stmt instanceof CallableStatement ? CallableStatement.class
+                    : stmt instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            Map<Integer, Object> binds = new TreeMap<>();
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                String name = method.getName();
+                if (type != Statement.class && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    binds.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters")) {
+                    binds.clear();
+                }
+                if (!name.startsWith("execute")) {
+                    try {
+                        return method.invoke(stmt, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+                String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                Stats stats = stats(site, text);
+                if (stats.sampleBinds == null) stats.sampleBinds = new TreeMap<>(binds);
+                long start = System.nanoTime();
+                Object result;
+                try {
+                    result = method.invoke(stmt, args);
+                } catch (InvocationTargetException e) {
+                    stats.errors.increment();
+                    throw e.getCause();
+                } finally {
+                    long nanos = System.nanoTime() - start;
+                    stats.latency.record(nanos);
+                    if (nanos >= TimeUnit.MILLISECONDS.toNanos(SLOW_QUERY_MS)) slow(stats, text, binds, nanos);
+                }
+                if (result instanceof ResultSet) return countRows((ResultSet) result, stats);
+                if (result instanceof Number) stats.rows.add(((Number) result).longValue());
+                if (result instanceof int[]) for (int n : (int[]) result) stats.rows.add(Math.max(n, 0));
+                if (result instanceof long[]) for (long n : (long[]) result) stats.rows.add(Math.max(n, 0));
+                return result;
+            });
+        }
+
+        // Counts the rows the caller actually reads
+        private static ResultSet countRows(ResultSet rs, Stats stats) {
+            long[] rows = {0};
+            boolean[] flushed = {false};
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                Object result;
+                try {
+                    result = method.invoke(rs, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                    rows[0]++;
+                } else if ((method.getName().equals("next") || method.getName().equals("close")) && !flushed[0]) {
+                    flushed[0] = true;
+                    stats.rows.add(rows[0]);
+                }
+                return result;
+            });
+        }
+
+        // The first frame outside the pool and this class, e.g. "StudentPages.page" or "EnrollmentPanel.enrollStudent"
+        private static String callSite() {
+            return StackWalker.getInstance().walk(frames -> frames
+                    .filter(f -> !f.getClassName().startsWith("java.") && !f.getClassName().startsWith("jdk.")
+                            && !f.getClassName().startsWith("com.sun.") && !f.getClassName().contains("$Proxy")
+                            && !f.getClassName().contains("$QueryMetrics") && !f.getClassName().contains("$ConnectionPool"))
+                    .findFirst()
+                    .map(f -> {
+                        String cls = f.getClassName().substring(f.getClassName().lastIndexOf('$') + 1);
+                        String method = f.getMethodName();
+                        if (method.startsWith("lambda$")) method = method.split("\\$")[1];
+                        return cls + "." + method;
+                    })
+                    .orElse("unknown"));
+        }
+
+        private static Stats stats(String site, String sql) {
+            String verb = sql == null ? "SQL" : sql.trim().split("\\s+", 2)[0].toUpperCase();
+            return STATS.computeIfAbsent(site + " " + verb, name -> {
+                Stats stats = new Stats(name, sql == null ? "" : sql.replaceAll("\\s+", " ").trim());
+                register("type=Statement,name=" + ObjectName.quote(name), stats);
+                return stats;
+            });
+        }
+
+        private static void slow(Stats stats, String sql, Map<Integer, Object> binds, long nanos) {
+            StringBuilder entry = new StringBuilder(String.format("%tT %7.1f ms  %s  %s", System.currentTimeMillis(),
+                    nanos / 1e6, stats.name, sql == null ? "" : sql.replaceAll("\\s+", " ").trim()));
+            if (!binds.isEmpty()) {
+                entry.append("  binds=[");
+                for (Map.Entry<Integer, Object> bind : binds.entrySet()) {
+                    String value = String.valueOf(bind.getValue());
+                    entry.append(bind.getKey()).append('=').append(value.length() > 100 ? value.substring(0, 100) + "..." : value).append(", ");
+                }
+                entry.setLength(entry.length() - 2);
+                entry.append(']');
+            }
+            LOG.warning("Slow query: " + entry);
+            synchronized (SLOW) {
+                SLOW.addFirst(entry.toString());
+                while (SLOW.size() > SLOW_LOG_SIZE) SLOW.removeLast();
+            }
+        }
+
+        static List<Stats> snapshot() {
+            List<Stats> all = new ArrayList<>(STATS.values());
+            all.sort((a, b) -> a.name.compareTo(b.name));
+            return all;
+        }
+
+        // Most recent first
+        static List<String> slowQueries() {
+            synchronized (SLOW) {
+                return new ArrayList<>(SLOW);
+            }
+        }
+
+        static void reset() {
+            for (Stats stats : STATS.values()) stats.reset();
+            ACQUIRE.reset();
+            synchronized (SLOW) {
+                SLOW.clear();
+            }
+        }
+
+        static String prometheus() {
+            StringBuilder out = new StringBuilder();
+            out.append("# HELP ce_statement_duration_seconds Execution time per named statement\n");
+            out.append("# TYPE ce_statement_duration_seconds summary\n");
+            for (Stats stats : snapshot()) {
+                String label = "statement=\"" + stats.name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+                for (double q : new double[]{0.5, 0.95, 0.99}) {
+                    out.append("ce_statement_duration_seconds{").append(label).append(",quantile=\"").append(q).append("\"} ")
+                            .append(stats.latency.percentileMillis(q * 100) / 1000).append('\n');
+                }
+                out.append("ce_statement_duration_seconds_sum{").append(label).append("} ").append(stats.latency.sumMillis() / 1000).append('\n');
+                out.append("ce_statement_duration_seconds_count{").append(label).append("} ").append(stats.getCount()).append('\n');
+                out.append("ce_statement_rows_total{").append(label).append("} ").append(stats.getRows()).append('\n');
+                out.append("ce_statement_errors_total{").append(label).append("} ").append(stats.getErrors()).append('\n');
+            }
+            out.append("# TYPE ce_pool_acquire_seconds summary\n");
+            for (double q : new double[]{0.5, 0.95, 0.99}) {
+                out.append("ce_pool_acquire_seconds{quantile=\"").append(q).append("\"} ").append(ACQUIRE.percentileMillis(q * 100) / 1000).append('\n');
+            }
+            out.append("ce_pool_acquire_seconds_sum ").append(ACQUIRE.sumMillis() / 1000).append('\n');
+            out.append("ce_pool_acquire_seconds_count ").append(ACQUIRE.count()).append('\n');
+            out.append("# TYPE ce_pool_connections gauge\n");
+            out.append("ce_pool_connections{state=\"active\"} ").append(POOL.getActiveCount()).append('\n');
+            out.append("ce_pool_connections{state=\"idle\"} ").append(POOL.getIdleCount()).append('\n');
+            out.append("# TYPE ce_pool_statement_cache_total counter\n");
+            out.append("ce_pool_statement_cache_total{result=\"hit\"} ").append(POOL.getStatementCacheHits()).append('\n');
+            out.append("ce_pool_statement_cache_total{result=\"miss\"} ").append(POOL.getStatementCacheMisses()).append('\n');
+            return out.toString();
+        }
+
+        // Written to a temporary file and moved into place, so a scraper never reads a partial file
+        static void writePrometheus(Path file) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, prometheus(), StandardCharsets.UTF_8);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private static void register(String name, Object mbean) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(JMX_DOMAIN + ":" + name));
+            } catch (JMException e) {
+                LOG.log(Level.FINE, "Could not register MBean " + name, e);
+            }
+        }
+
+        public interface StatsMBean {
+            String getName();
+            String getSql();
+            long getCount();
+            long getErrors();
+            long getRows();
+            double getMeanMillis();
+            double getP50Millis();
+            double getP95Millis();
+            double getP99Millis();
+            double getMaxMillis();
+        }
+
+        static class Stats implements StatsMBean {
+            private final String name, sql;
+            private final Histogram latency = new Histogram();
+            private final LongAdder rows = new LongAdder(), errors = new LongAdder();
+            private volatile Map<Integer, Object> sampleBinds; // parameters of the first execution, for EXPLAIN
+
+            Stats(String name, String sql) {
+                this.name = name;
+                this.sql = sql;
+            }
+
+            void reset() {
+                latency.reset();
+                rows.reset();
+                errors.reset();
+            }
+
+            Map<Integer, Object> getSampleBinds() {
+                Map<Integer, Object> binds = sampleBinds;
+                return binds == null ? Collections.emptyMap() : binds;
+            }
+
+            @Override public String getName() { return name; }
+            @Override public String getSql() { return sql; }
+            @Override public long getCount() { return latency.count(); }
+            @Override public long getErrors() { return errors.sum(); }
+            @Override public long getRows() { return rows.sum(); }
+            @Override public double getMeanMillis() { return latency.count() == 0 ? 0 : latency.sumMillis() / latency.count(); }
+            @Override public double getP50Millis() { return latency.percentileMillis(50); }
+            @Override public double getP95Millis() { return latency.percentileMillis(95); }
+            @Override public double getP99Millis() { return latency.percentileMillis(99); }
+            @Override public double getMaxMillis() { return latency.maxMillis(); }
+        }
+
+        public interface PoolStatsMBean {
+            int getActiveCount();
+            int getIdleCount();
+            int getOpenCount();
+            long getBorrowCount();
+            double getAverageWaitMillis();
+            double getP99WaitMillis();
+            long getMaxWaitMillis();
+            long getStatementCacheHits();
+            long getStatementCacheMisses();
+            double getStatementCacheHitRatio();
+        }
+
+        static class PoolStats implements PoolStatsMBean {
+            @Override public int getActiveCount() { return POOL.getActiveCount(); }
+            @Override public int getIdleCount() { return POOL.getIdleCount(); }
+            @Override public int getOpenCount() { return POOL.getOpenCount(); }
+            @Override public long getBorrowCount() { return POOL.getBorrowCount(); }
+            @Override public double getAverageWaitMillis() { return POOL.getAverageWaitMillis(); }
+            @Override public double getP99WaitMillis() { return ACQUIRE.percentileMillis(99); }
+            @Override public long getMaxWaitMillis() { return POOL.getMaxWaitMillis(); }
+            @Override public long getStatementCacheHits() { return POOL.getStatementCacheHits(); }
+            @Override public long getStatementCacheMisses() { return POOL.getStatementCacheMisses(); }
+            @Override public double getStatementCacheHitRatio() { return POOL.getStatementCacheHitRatio(); }
+        }
+
+        // Log-linear buckets in the style of HdrHistogram: 16 sub-buckets per power of two of microseconds,
+        // so any recorded value is reported within about 6%, from 1 us to hours, in a fixed 8 KB
+        static class Histogram {
+            private static final int SUB_BITS = 4, SUB = 1 << SUB_BITS;
+            private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB);
+            private final LongAdder count = new LongAdder(), sumMicros = new LongAdder();
+            private final AtomicLong maxMicros = new AtomicLong();
+
+            void record(long nanos) {
+                long micros = Math.max(0, nanos / 1_000);
+                buckets.incrementAndGet(index(micros));
+                count.increment();
+                sumMicros.add(micros);
+                maxMicros.accumulateAndGet(micros, Math::max);
+            }
+
+            long count() {
+                return count.sum();
+            }
+
+            double sumMillis() {
+                return sumMicros.sum() / 1e3;
+            }
+
+            double maxMillis() {
+                return maxMicros.get() / 1e3;
+            }
+
+            double percentileMillis(double percentile) {
+                long total = count.sum();
+                if (total == 0) return 0;
+                long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+                long seen = 0;
+                for (int i = 0; i < buckets.length(); i++) {
+                    seen += buckets.get(i);
+                    if (seen >= target) return Math.min(highestEquivalent(i), maxMicros.get()) / 1e3;
+                }
+                return maxMillis();
+            }
+
+            void reset() {
+                for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+                count.reset();
+                sumMicros.reset();
+                maxMicros.set(0);
+            }
+
+            static int index(long micros) {
+                if (micros < SUB) return (int) micros;
+                int exp = 63 - Long.numberOfLeadingZeros(micros);
+                return (exp - SUB_BITS + 1) * SUB + (int) ((micros >>> (exp - SUB_BITS)) & (SUB - 1));
+            }
+
+            static long highestEquivalent(int index) {
+                if (index < SUB) return index;
+                int shift = index / SUB - 1;
+                return ((long) (SUB + index % SUB) << shift) + (1L << shift) - 1;
+            }
+        }
+    }
+
+    // --------- RESPONSIVENESS MONITOR ---------
+    // Times every event the EDT dispatches, and a watchdog thread logs the EDT's stack while one event
+    // blocks it for longer than ce.edt.stallMs. Together with the JFR events below, a recording made with
+    //   java -XX:StartFlightRecording:filename=clerk.jfr CourseEnrollmentSystem
+    // shows panel switches, table loads, searches and slow dispatches under "Course Enrollment".
+    static class EdtMonitor extends EventQueue {
+        private static final Logger LOG = Logger.getLogger(EdtMonitor.class.getName());
+        static final long STALL_MS = Long.getLong("ce.edt.stallMs", 250);
+        private static final long SAMPLE_MS = Long.getLong("ce.edt.sampleMs", 50);
+        static final QueryMetrics.Histogram DISPATCH = new QueryMetrics.Histogram();
+        private static final AtomicLong stalls = new AtomicLong();
+
+        private volatile Thread edt;
+        private volatile long dispatchStart; // 0 while the EDT is idle
+        private volatile String stallStack;  // sampled during the current stall, if any
+        private int depth;                   // nested dispatch, e.g. inside a modal dialog; EDT only
+
+        static void install() {
+            if (Boolean.getBoolean("ce.edt.monitorDisabled")) return;
+            EdtMonitor monitor = new EdtMonitor();
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(monitor);
+            Thread watchdog = new Thread(monitor::watch, "edt-watchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+
+        static long getStallCount() {
+            return stalls.get();
+        }
+
+        @Override
+        protected void dispatchEvent(AWTEvent awtEvent) {
+            EdtDispatchEvent event = new EdtDispatchEvent();
+            event.begin();
+            edt = Thread.currentThread();
+            long start = System.nanoTime();
+            depth++;
+            dispatchStart = start;
+            try {
+                super.dispatchEvent(awtEvent);
+            } finally {
+                depth--;
+                DISPATCH.record(System.nanoTime() - start);
+                // A modal dialog pumps events inside the outer dispatch; its clock restarts when the nested one ends
+                dispatchStart = depth > 0 ? System.nanoTime() : 0;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.awtEvent = awtEvent.getClass().getSimpleName() + " from " + awtEvent.getSource().getClass().getSimpleName();
+                    event.sampledStack = stallStack;
+                    event.commit();
+                }
+                if (depth == 0) stallStack = null;
+            }
+        }
+
+        private void watch() {
+            long reported = 0;
+            while (true) {
+                try {
+                    Thread.sleep(SAMPLE_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long start = dispatchStart;
+                Thread thread = edt;
+                if (start == 0 || start == reported || thread == null) continue;
+                long blockedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (blockedMs < STALL_MS) continue;
+                reported = start;
+                stalls.incrementAndGet();
+                StringBuilder stack = new StringBuilder();
+                for (StackTraceElement frame : thread.getStackTrace()) stack.append("\n\tat ").append(frame);
+                stallStack = stack.toString();
+                LOG.warning("Event dispatch thread blocked for " + blockedMs + " ms:" + stack);
+            }
+        }
+    }
+
+    @Name("course_enrollment.PanelSwitch")
+    @Label("Panel Switch")
+    @Category("Course Enrollment")
+    static class PanelSwitchEvent extends Event {
+        @Label("Panel")
+        String panel;
+    }
+
+    @Name("course_enrollment.TableLoad")
+    @Label("Table Load")
+    @Category("Course Enrollment")
+    static class TableLoadEvent extends Event {
+        @Label("Table")
+        String table;
+        @Label("Page")
+        int page;
+        @Label("Rows")
+        int rows;
+        @Label("Total Rows")
+        int totalRows;
+    }
+
+    @Name("course_enrollment.Search")
+    @Label("Search")
+    @Category("Course Enrollment")
+    static class SearchEvent extends Event {
+        @Label("Table")
+        String table;
+        @Label("Query")
+        String query;
+        @Label("Results")
+        int results;
+        @Label("Narrowed In Memory")
+        boolean inMemory;
+        @Label("Truncated")
+        boolean truncated;
+    }
+
+    @Name("course_enrollment.EdtDispatch")
+    @Label("Slow EDT Dispatch")
+    @Category("Course Enrollment")
+    @Threshold("100 ms")
+    static class EdtDispatchEvent extends Event {
+        @Label("AWT Event")
+        String awtEvent;
+        @Label("Sampled EDT Stack")
+        String sampledStack;
     }
 }
\ No newline at end of file
@@ -31,8 +31,42 @@ CREATE TABLE `courses` (
   `id` int(11) NOT NULL,
   `course_code` varchar(50) NOT NULL,
   `course_name` varchar(255) NOT NULL,
+  `instructor` varchar(255) NOT NULL DEFAULT '',
   `course_description` text DEFAULT NULL,
-  `created_at` timestamp NOT NULL DEFAULT current_timestamp()
+  `capacity` int(11) DEFAULT NULL,
+  `seats_taken` int(11) NOT NULL DEFAULT 0,
+  `created_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  `updated_at` timestamp(6) NULL DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `deletion_jobs`
+--
+
+CREATE TABLE `deletion_jobs` (
+  `id` int(11) NOT NULL,
+  `target` varchar(10) NOT NULL,
+  `target_id` int(11) NOT NULL,
+  `total` int(11) NOT NULL,
+  `removed` int(11) NOT NULL DEFAULT 0,
+  `state` varchar(10) NOT NULL DEFAULT 'running',
+  `created_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  `updated_at` timestamp NULL DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `enrollment_daily`
+--
+
+CREATE TABLE `enrollment_daily` (
+  `term` varchar(20) NOT NULL DEFAULT '',
+  `day` date NOT NULL,
+  `slot` tinyint(4) NOT NULL,
+  `enrolled` int(11) NOT NULL DEFAULT 0
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
 
 -- --------------------------------------------------------
@@ -45,11 +79,60 @@ CREATE TABLE `enrollments` (
   `id` int(11) NOT NULL,
   `student_id` int(11) NOT NULL,
   `course_id` int(11) NOT NULL,
+  `term` varchar(20) NOT NULL,
   `enrollment_date` timestamp NOT NULL DEFAULT current_timestamp()
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
 
 -- --------------------------------------------------------
 
+--
+-- Table structure for table `enrollments_archive`
+--
+
+CREATE TABLE `enrollments_archive` (
+  `id` int(11) NOT NULL,
+  `term` varchar(20) NOT NULL,
+  `student_id` int(11) NOT NULL,
+  `student_code` varchar(50) NOT NULL,
+  `student_name` varchar(255) NOT NULL,
+  `course_id` int(11) NOT NULL,
+  `course_code` varchar(50) NOT NULL,
+  `course_name` varchar(255) NOT NULL,
+  `enrollment_date` timestamp NOT NULL DEFAULT current_timestamp(),
+  `archived_at` timestamp NOT NULL DEFAULT current_timestamp()
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci
+ PARTITION BY KEY (`term`)
+PARTITIONS 8;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `schema_version`
+--
+
+CREATE TABLE `schema_version` (
+  `version` int(11) NOT NULL,
+  `description` varchar(255) NOT NULL,
+  `applied_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  `duration_ms` int(11) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+--
+-- Dumping data for table `schema_version`
+--
+
+INSERT INTO `schema_version` (`version`, `description`, `duration_ms`) VALUES
+(1, 'Tables of the original dump', 0),
+(2, 'courses.instructor, written by the course panel', 0),
+(3, 'FULLTEXT indexes for the name searches', 0),
+(4, 'Course capacity, seat counter and waitlist', 0),
+(5, 'Covering indexes and change-detection columns', 0),
+(6, 'Enrollment counters for the reports panel', 0),
+(7, 'Progress of chunked student and course deletes', 0),
+(8, 'Academic terms and the enrollment archive', 0);
+
+-- --------------------------------------------------------
+
 --
 -- Table structure for table `students`
 --
@@ -60,6 +143,39 @@ CREATE TABLE `students` (
   `first_name` varchar(100) NOT NULL,
   `last_name` varchar(100) NOT NULL,
   `middle_name` varchar(100) DEFAULT NULL,
+  `created_at` timestamp NOT NULL DEFAULT current_timestamp(),
+  `updated_at` timestamp(6) NULL DEFAULT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `terms`
+--
+
+CREATE TABLE `terms` (
+  `code` varchar(20) NOT NULL,
+  `state` varchar(10) NOT NULL DEFAULT 'closed',
+  `started_at` timestamp NOT NULL DEFAULT current_timestamp()
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+--
+-- Dumping data for table `terms`
+--
+
+INSERT INTO `terms` (`code`, `state`) VALUES
+('2025-1', 'active');
+
+-- --------------------------------------------------------
+
+--
+-- Table structure for table `waitlist`
+--
+
+CREATE TABLE `waitlist` (
+  `id` int(11) NOT NULL,
+  `student_id` int(11) NOT NULL,
+  `course_id` int(11) NOT NULL,
   `created_at` timestamp NOT NULL DEFAULT current_timestamp()
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
 
@@ -72,22 +188,69 @@ CREATE TABLE `students` (
 --
 ALTER TABLE `courses`
   ADD PRIMARY KEY (`id`),
-  ADD UNIQUE KEY `course_code` (`course_code`);
+  ADD UNIQUE KEY `course_code` (`course_code`),
+  ADD KEY `updated_at` (`updated_at`),
+  ADD KEY `seats_taken` (`seats_taken`),
+  ADD FULLTEXT KEY `ft_course_name` (`course_name`);
+
+--
+-- Indexes for table `deletion_jobs`
+--
+ALTER TABLE `deletion_jobs`
+  ADD PRIMARY KEY (`id`),
+  ADD KEY `state` (`state`,`target`,`target_id`);
+
+--
+-- Indexes for table `enrollment_daily`
+--
+ALTER TABLE `enrollment_daily`
+  ADD PRIMARY KEY (`term`,`day`,`slot`);
 
 --
 -- Indexes for table `enrollments`
 --
 ALTER TABLE `enrollments`
   ADD PRIMARY KEY (`id`),
-  ADD UNIQUE KEY `student_id` (`student_id`,`course_id`),
-  ADD KEY `course_id` (`course_id`);
+  ADD UNIQUE KEY `student_course_term` (`student_id`,`course_id`,`term`),
+  ADD KEY `course_student` (`course_id`,`student_id`),
+  ADD KEY `term` (`term`);
+
+--
+-- Indexes for table `enrollments_archive`
+--
+ALTER TABLE `enrollments_archive`
+  ADD PRIMARY KEY (`term`,`id`),
+  ADD KEY `student_code` (`student_code`),
+  ADD KEY `course_code` (`course_code`);
+
+--
+-- Indexes for table `schema_version`
+--
+ALTER TABLE `schema_version`
+  ADD PRIMARY KEY (`version`);
 
 --
 -- Indexes for table `students`
 --
 ALTER TABLE `students`
   ADD PRIMARY KEY (`id`),
-  ADD UNIQUE KEY `student_id` (`student_id`);
+  ADD UNIQUE KEY `student_id` (`student_id`),
+  ADD KEY `updated_at` (`updated_at`),
+  ADD FULLTEXT KEY `ft_student_names` (`first_name`,`last_name`,`middle_name`);
+
+--
+-- Indexes for table `terms`
+--
+ALTER TABLE `terms`
+  ADD PRIMARY KEY (`code`);
+
+--
+-- Indexes for table `waitlist`
+--
+ALTER TABLE `waitlist`
+  ADD PRIMARY KEY (`id`),
+  ADD UNIQUE KEY `student_id` (`student_id`,`course_id`),
+  ADD KEY `course_queue` (`course_id`,`id`,`student_id`);
 
 --
 -- AUTO_INCREMENT for dumped tables
@@ -99,6 +262,12 @@ ALTER TABLE `students`
 ALTER TABLE `courses`
   MODIFY `id` int(11) NOT NULL AUTO_INCREMENT;
 
+--
+-- AUTO_INCREMENT for table `deletion_jobs`
+--
+ALTER TABLE `deletion_jobs`
+  MODIFY `id` int(11) NOT NULL AUTO_INCREMENT;
+
 --
 -- AUTO_INCREMENT for table `enrollments`
 --
@@ -111,6 +280,12 @@ ALTER TABLE `enrollments`
 ALTER TABLE `students`
   MODIFY `id` int(11) NOT NULL AUTO_INCREMENT;
 
+--
+-- AUTO_INCREMENT for table `waitlist`
+--
+ALTER TABLE `waitlist`
+  MODIFY `id` int(11) NOT NULL AUTO_INCREMENT;
+
 --
 -- Constraints for dumped tables
 --
@@ -121,6 +296,13 @@ ALTER TABLE `students`
 ALTER TABLE `enrollments`
   ADD CONSTRAINT `enrollments_ibfk_1` FOREIGN KEY (`student_id`) REFERENCES `students` (`id`) ON DELETE CASCADE,
   ADD CONSTRAINT `enrollments_ibfk_2` FOREIGN KEY (`course_id`) REFERENCES `courses` (`id`) ON DELETE CASCADE;
+
+--
+-- Constraints for table `waitlist`
+--
+ALTER TABLE `waitlist`
+  ADD CONSTRAINT `waitlist_ibfk_1` FOREIGN KEY (`student_id`) REFERENCES `students` (`id`) ON DELETE CASCADE,
+  ADD CONSTRAINT `waitlist_ibfk_2` FOREIGN KEY (`course_id`) REFERENCES `courses` (`id`) ON DELETE CASCADE;
 COMMIT;
 
 /*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;
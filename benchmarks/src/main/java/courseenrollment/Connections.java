@@ -0,0 +1,41 @@
+package courseenrollment;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+// Where each operation gets its connection: a new DriverManager connection per operation, as every
+// panel did before the pool, or the application's ConnectionPool
+@State(Scope.Benchmark)
+public class Connections {
+    @Param({"direct", "pooled"})
+    public String connections;
+
+    private String url;
+    private CourseEnrollmentSystem.ConnectionPool pool;
+
+    @Setup(Level.Trial)
+    public void open(Seeded db) {
+        url = db.url;
+        if (connections.equals("pooled")) pool = new CourseEnrollmentSystem.ConnectionPool(url, EmbeddedMariaDB.USER, EmbeddedMariaDB.PASS);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        if (pool != null) {
+            System.out.println("pool: " + pool);
+            pool.close();
+        }
+    }
+
+    Connection get() throws SQLException {
+        return pool != null ? pool.getConnection() : DriverManager.getConnection(url, EmbeddedMariaDB.USER, EmbeddedMariaDB.PASS);
+    }
+}
@@ -0,0 +1,54 @@
+package courseenrollment;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+// One MariaDB server per JVM, started on first use. Its base and data directories
+// persist between runs, so a database seeded by one benchmark fork is still there for the next.
+// They must not live under java.io.tmpdir: MariaDB4j wipes a data directory there on every start.
+final class EmbeddedMariaDB {
+    static final String USER = "root", PASS = "";
+    private static final File DIR = new File(System.getProperty("ce.bench.dataDir",
+            new File(System.getProperty("user.home"), ".course_enrollment_bench").getPath()));
+
+    private static DB server;
+    private static int port;
+
+    private EmbeddedMariaDB() {
+    }
+
+    // JDBC URL of the given database, created when missing
+    static synchronized String url(String database) throws Exception {
+        if (server == null) {
+            port = freePort();
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+            config.setPort(port);
+            config.setBaseDir(new File(DIR, "base"));
+            config.setDataDir(new File(DIR, "data"));
+            config.setDeletingTemporaryBaseAndDataDirsOnShutdown(false);
+            config.addArg("--innodb-buffer-pool-size=" + System.getProperty("ce.bench.bufferPool", "512M"));
+            if ("root".equals(System.getProperty("user.name"))) config.addArg("--user=root"); // mariadbd refuses root otherwise
+            server = DB.newEmbeddedDB(config.build());
+            server.start();
+        }
+        return "jdbc:mysql://localhost:" + port + "/" + database
+                + "?createDatabaseIfNotExist=true&rewriteBatchedStatements=true&useServerPrepStmts=true";
+    }
+
+    // JMH ends its forks without running shutdown hooks, so the server is stopped explicitly
+    static synchronized void stop() throws Exception {
+        if (server == null) return;
+        server.stop();
+        server = null;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
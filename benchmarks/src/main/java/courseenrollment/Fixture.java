@@ -0,0 +1,366 @@
+package courseenrollment;
+
+import courseenrollment.CourseEnrollmentSystem.ColumnStore;
+import courseenrollment.CourseEnrollmentSystem.EnrollmentGraph;
+import courseenrollment.CourseEnrollmentSystem.EnrollmentPanel;
+import courseenrollment.CourseEnrollmentSystem.EnrollmentStats;
+import courseenrollment.CourseEnrollmentSystem.Enrollments;
+import courseenrollment.CourseEnrollmentSystem.EntityCache;
+import courseenrollment.CourseEnrollmentSystem.PagedTableModel;
+import courseenrollment.CourseEnrollmentSystem.SchemaMigrator;
+import courseenrollment.CourseEnrollmentSystem.SearchPipeline;
+import courseenrollment.CourseEnrollmentSystem.StudentPanel;
+import courseenrollment.CourseEnrollmentSystem.Terms;
+
+import javax.swing.table.DefaultTableModel;
+import java.lang.ref.Reference;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+// A database seeded with 'rows' enrollments, and the operations measured on it, one method per data-access
+// path the suite measures. Every method returns a count for the benchmark to consume; the write paths
+// remove what they added. seed() fills a scratch database shaped like course_enrollment.sql (its tables
+// are dropped and recreated).
+final class Fixture {
+    private static final Logger LOG = Logger.getLogger(Fixture.class.getName());
+    static final int BATCH = 100;
+    private static final int ER_NO_SUCH_TABLE = 1146;
+
+    private static final String[] SCHEMA = {
+            "DROP TABLE IF EXISTS waitlist",
+            "DROP TABLE IF EXISTS enrollments",
+            "DROP TABLE IF EXISTS students",
+            "DROP TABLE IF EXISTS courses",
+            "DROP TABLE IF EXISTS enrollment_daily",
+            "DROP TABLE IF EXISTS deletion_jobs",
+            "DROP TABLE IF EXISTS enrollments_archive",
+            "DROP TABLE IF EXISTS terms",
+            "DROP TABLE IF EXISTS schema_version"
+    };
+    private static final String[] FIRST = {"Juan", "Maria", "Jose", "Ana", "Mark", "Grace", "Paolo", "Liza", "Ramon", "Celia"};
+    private static final String[] LAST = {"Santos", "Reyes", "Cruz", "Bautista", "Garcia", "Mendoza", "Torres", "Flores", "Ramos", "Aquino"};
+    private static final String[] SUBJECTS = {"Programming", "Databases", "Networks", "Calculus", "Physics", "Ethics", "Statistics", "Design"};
+
+    // The rows of a search result, narrowed in memory when the query is extended
+    private static final List<Object[]> NARROW_ROWS = new ArrayList<>();
+    static {
+        for (int i = 0; i < SearchPipeline.MAX_ROWS; i++) {
+            NARROW_ROWS.add(new Object[]{i, String.format("S%07d", i), FIRST[i % FIRST.length], LAST[i % LAST.length], null});
+        }
+    }
+
+    final int rows, students, courses;
+    private final int benchCourse; // seeded without enrollments
+    private final StudentPanel.StudentPages studentPages = new StudentPanel.StudentPages();
+    private final EnrollmentPanel.EnrollmentPages enrollmentPages = new EnrollmentPanel.EnrollmentPages();
+    private final Object[] midStudent, midEnrollment;
+
+    private Fixture(int rows) {
+        this.rows = rows;
+        students = studentCount(rows);
+        courses = courseCount(rows);
+        benchCourse = courses + 1;
+        midStudent = new Object[]{0, String.format("S%07d", students / 2)};
+        midEnrollment = new Object[]{0, midStudent[1], null, String.format("C%05d", 0), null};
+    }
+
+    int studentsFirstPage(Connection conn) throws SQLException {
+        return studentPages.page(conn, null, 0, PagedTableModel.PAGE_SIZE).size();
+    }
+
+    int studentsKeysetPage(Connection conn) throws SQLException {
+        return studentPages.page(conn, midStudent, 0, PagedTableModel.PAGE_SIZE).size();
+    }
+
+    int studentsCount(Connection conn) throws SQLException {
+        return studentPages.count(conn);
+    }
+
+    int enrollmentsFirstPage(Connection conn) throws SQLException {
+        return enrollmentPages.page(conn, null, 0, PagedTableModel.PAGE_SIZE).size();
+    }
+
+    int enrollmentsKeysetPage(Connection conn) throws SQLException {
+        return enrollmentPages.page(conn, midEnrollment, 0, PagedTableModel.PAGE_SIZE).size();
+    }
+
+    int searchById(Connection conn) throws SQLException {
+        return search(conn, "S00" + ThreadLocalRandom.current().nextInt(10, 100));
+    }
+
+    int searchByName(Connection conn) throws SQLException {
+        return search(conn, FIRST[ThreadLocalRandom.current().nextInt(FIRST.length)].substring(0, 3));
+    }
+
+    int searchNarrow() {
+        int hits = 0;
+        for (Object[] row : NARROW_ROWS) {
+            if (CourseEnrollmentSystem.matchesSearch(row, "mar san", 1, 2, 3, 4)) hits++;
+        }
+        return hits;
+    }
+
+    int rosterCount(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM enrollments WHERE course_id = ?")) {
+            ps.setInt(1, randomCourse());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    int reports(Connection conn) throws SQLException {
+        return EnrollmentStats.load(conn).courses.size();
+    }
+
+    // One enrollment and its removal, a transaction each
+    int enrollAndDrop(Connection conn) throws SQLException {
+        int id = Enrollments.enroll(conn, randomStudent(), benchCourse);
+        Enrollments.unenroll(conn, id);
+        return 1;
+    }
+
+    // BATCH students enrolled one transaction at a time, then removed
+    int enrollEach(Connection conn) throws SQLException {
+        int first = firstOfBatch();
+        for (int i = 0; i < BATCH; i++) Enrollments.enroll(conn, first + i, benchCourse);
+        return dropBenchCourse(conn);
+    }
+
+    // The same BATCH students in one bulk enrollment, then removed
+    int enrollBatch(Connection conn) throws SQLException {
+        int first = firstOfBatch();
+        int[] ids = new int[BATCH];
+        for (int i = 0; i < ids.length; i++) ids[i] = first + i;
+        Enrollments.enrollStudentsInCourse(conn, ids, benchCourse);
+        return dropBenchCourse(conn);
+    }
+
+    int graphLoad(Connection conn) throws SQLException {
+        EnrollmentGraph.INSTANCE.invalidate();
+        EnrollmentGraph.INSTANCE.sync(conn);
+        return 1;
+    }
+
+    int graphRosterSize() {
+        return EnrollmentGraph.INSTANCE.rosterSize(randomCourse());
+    }
+
+    int graphSchedule() {
+        return EnrollmentGraph.INSTANCE.schedule(randomStudent()).length;
+    }
+
+    int graphSharedStudents() {
+        return EnrollmentGraph.INSTANCE.sharedStudents(randomCourse(), randomCourse());
+    }
+
+    // Heap retained per enrollment row when the listing is held in a DefaultTableModel (Vector of
+    // Vectors), as a List<Object[]> (the pages before column stores) and as a ColumnStore
+    String footprint(Connection conn, int limit) throws SQLException {
+        String[] columns = {"Enrollment ID", "Student ID", "Student Name", "Course Code", "Course Name"};
+        int[] repeating = enrollmentPages.repeatingColumns();
+        retained(conn, limit, page -> page); // warms the entity cache, which is not part of the rows
+        long table = retained(conn, limit, page -> {
+            DefaultTableModel model = new DefaultTableModel(columns, 0);
+            for (Object[] row : page) model.addRow(row);
+            return model;
+        });
+        long list = retained(conn, limit, ArrayList::new);
+        long store = retained(conn, limit, page -> ColumnStore.of(page, ColumnStore.dictionaries(columns.length, repeating)));
+        return String.format("%-24s %10s%n%-24s %10d%n%-24s %10d%n%-24s %10d%n", "rows held (" + limit + ")", "bytes/row",
+                "DefaultTableModel", table / Math.max(1, limit), "List<Object[]>", list / Math.max(1, limit),
+                "ColumnStore", store / Math.max(1, limit));
+    }
+
+    private long retained(Connection conn, int limit, Function<List<Object[]>, Object> build) throws SQLException {
+        long before = usedHeap();
+        Object kept = build.apply(enrollmentPages.page(conn, null, 0, limit));
+        long after = usedHeap();
+        Reference.reachabilityFence(kept);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private int randomStudent() {
+        return 1 + ThreadLocalRandom.current().nextInt(students);
+    }
+
+    private int randomCourse() {
+        return 1 + ThreadLocalRandom.current().nextInt(courses);
+    }
+
+    private int firstOfBatch() {
+        return 1 + ThreadLocalRandom.current().nextInt(Math.max(1, students - BATCH));
+    }
+
+    // Through the chunked course delete, so seats and the per-day counters are kept right
+    private int dropBenchCourse(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            Set<Integer> touched = new HashSet<>();
+            int removed = 0, count;
+            while ((count = Enrollments.removeCourseChunk(conn, benchCourse, BATCH, touched)) > 0) removed += count;
+            conn.commit();
+            EnrollmentGraph.INSTANCE.coursesChanged(conn, touched);
+            return removed;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static int search(Connection conn, String query) throws SQLException {
+        try (PreparedStatement ps = StudentPanel.prepareSearch(conn, query)) {
+            ps.setMaxRows(SearchPipeline.MAX_ROWS + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                return CourseEnrollmentSystem.distinctById(StudentPanel.readStudents(rs)).size();
+            }
+        }
+    }
+
+    // Seeds the database unless it already holds this seed at the current schema version, so each
+    // benchmark fork does not seed again
+    static Fixture prepare(Connection conn, int rows) throws SQLException {
+        if (!seeded(conn, rows)) {
+            long start = System.nanoTime();
+            seed(conn, rows);
+            LOG.info(String.format("Seeded %d enrollments in %.1fs", rows, (System.nanoTime() - start) / 1e9));
+        }
+        EntityCache.STUDENTS.invalidate();
+        EntityCache.COURSES.invalidate();
+        EnrollmentGraph.INSTANCE.invalidate();
+        return new Fixture(rows);
+    }
+
+    private static boolean seeded(Connection conn, int rows) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT (SELECT MAX(version) FROM schema_version), (SELECT COUNT(*) FROM enrollments), " +
+                     "(SELECT COUNT(*) FROM students), (SELECT COUNT(*) FROM courses)")) {
+            rs.next();
+            return rs.getInt(1) == SchemaMigrator.CURRENT_VERSION && rs.getInt(2) == rows
+                    && rs.getInt(3) == studentCount(rows) && rs.getInt(4) == courseCount(rows) + 1;
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_NO_SUCH_TABLE) throw e;
+            return false; // not seeded yet
+        }
+    }
+
+    private static int studentCount(int rows) {
+        return Math.max(10, (rows + 3) / 4);
+    }
+
+    private static int courseCount(int rows) {
+        return Math.max(20, rows / 200);
+    }
+
+    // Drops and recreates the tables, then inserts rows / 4 students, rows / 200 courses (at least 20)
+    // and 'rows' enrollments, plus one course without enrollments for the write benchmarks
+    static void seed(Connection conn, int rows) throws SQLException {
+        refuseApplicationDatabase(conn);
+        int students = studentCount(rows);
+        int courses = courseCount(rows);
+        try (Statement stmt = conn.createStatement()) {
+            for (String ddl : SCHEMA) stmt.execute(ddl);
+        }
+        SchemaMigrator.migrate(conn);
+        String term = Terms.current(conn);
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO students (student_id, first_name, last_name, middle_name) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < students; i++) {
+                    ps.setString(1, String.format("S%07d", i));
+                    ps.setString(2, FIRST[i % FIRST.length]);
+                    ps.setString(3, LAST[(i / FIRST.length) % LAST.length]);
+                    ps.setString(4, i % 3 == 0 ? null : LAST[i % LAST.length]);
+                    addBatch(conn, ps, i);
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO courses (course_code, course_name, instructor) VALUES (?, ?, ?)")) {
+                for (int i = 0; i <= courses; i++) {
+                    ps.setString(1, String.format("C%05d", i));
+                    ps.setString(2, SUBJECTS[i % SUBJECTS.length] + " " + (i / SUBJECTS.length + 1));
+                    ps.setString(3, FIRST[i % FIRST.length] + " " + LAST[i % LAST.length]);
+                    addBatch(conn, ps, i);
+                }
+                ps.executeBatch();
+            }
+            // Every student takes up to four consecutive courses, so the (student, course) pairs are unique
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO enrollments (student_id, course_id, term) VALUES (?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    int student = i / 4;
+                    ps.setInt(1, student + 1);
+                    ps.setInt(2, (student + i % 4) % courses + 1);
+                    ps.setString(3, term);
+                    addBatch(conn, ps, i);
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+            recount(conn, term);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    // The rows above bypass Enrollments, so the seat counts and the per-day counters are set from them
+    private static void recount(Connection conn, String term) throws SQLException {
+        try (PreparedStatement seats = conn.prepareStatement(
+                "UPDATE courses c SET seats_taken = (SELECT COUNT(*) FROM enrollments e WHERE e.course_id = c.id AND e.term = ?)");
+             Statement stmt = conn.createStatement()) {
+            seats.setString(1, term);
+            seats.executeUpdate();
+            stmt.executeUpdate("DELETE FROM enrollment_daily");
+            stmt.executeUpdate("INSERT INTO enrollment_daily (term, day, slot, enrolled) SELECT term, DATE(enrollment_date), " +
+                    "MOD(course_id, " + EnrollmentStats.SLOTS + "), COUNT(*) FROM enrollments GROUP BY 1, 2, 3");
+        }
+    }
+
+    // seed() drops every table of the database it is given; never let that be the application's own
+    private static void refuseApplicationDatabase(Connection conn) throws SQLException {
+        String database;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DATABASE()")) {
+            rs.next();
+            database = rs.getString(1);
+        }
+        String application = CourseEnrollmentSystem.POOL.url.replaceFirst("^[^/]*//[^/]*/", "").replaceFirst("[?;].*$", "");
+        if (database == null || database.equalsIgnoreCase("course_enrollment") || database.equalsIgnoreCase(application)) {
+            throw new SQLException("Refusing to seed " + (database == null ? "a connection without a database" : "database " + database)
+                    + ": seeding drops all of its tables; point ce.bench.url at a scratch database");
+        }
+    }
+
+    private static void addBatch(Connection conn, PreparedStatement ps, int i) throws SQLException {
+        ps.addBatch();
+        if ((i + 1) % 5_000 == 0) {
+            ps.executeBatch();
+            conn.commit();
+        }
+    }
+}
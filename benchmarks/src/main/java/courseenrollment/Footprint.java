@@ -0,0 +1,20 @@
+package courseenrollment;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+// Heap retained per row by the enrollment listing's row holders; not a JMH benchmark, since it measures
+// what stays reachable rather than the cost of an operation. Run with the row count to hold.
+public class Footprint {
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Seeded db = new Seeded();
+        db.rows = rows;
+        db.seed();
+        try (Connection conn = DriverManager.getConnection(db.url, EmbeddedMariaDB.USER, EmbeddedMariaDB.PASS)) {
+            System.out.print(db.fixture.footprint(conn, rows));
+        } finally {
+            db.stop();
+        }
+    }
+}
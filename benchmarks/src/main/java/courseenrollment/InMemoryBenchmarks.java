@@ -0,0 +1,67 @@
+package courseenrollment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+
+// Loading the enrollment graph and the questions it answers without a query, next to the search
+// narrowing (filterTable() before the FULLTEXT search) done on a previous result
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InMemoryBenchmarks {
+    private Connection conn;
+
+    @Setup(Level.Trial)
+    public void loadGraph(Seeded db) throws Exception {
+        conn = DriverManager.getConnection(db.url, EmbeddedMariaDB.USER, EmbeddedMariaDB.PASS);
+        db.fixture.graphLoad(conn);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        conn.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int graphLoad(Seeded db) throws Exception {
+        return db.fixture.graphLoad(conn);
+    }
+
+    @Benchmark
+    public int graphRosterSize(Seeded db) {
+        return db.fixture.graphRosterSize();
+    }
+
+    @Benchmark
+    public int graphSchedule(Seeded db) {
+        return db.fixture.graphSchedule();
+    }
+
+    @Benchmark
+    public int graphSharedStudents(Seeded db) {
+        return db.fixture.graphSharedStudents();
+    }
+
+    @Benchmark
+    public int searchNarrow(Seeded db) {
+        return db.fixture.searchNarrow();
+    }
+}
@@ -0,0 +1,183 @@
+package courseenrollment;
+
+import courseenrollment.CourseEnrollmentSystem.ConnectionPool;
+import courseenrollment.CourseEnrollmentSystem.Enrollments;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Registration-rush simulation, run with
+//   java -Dce.load.workers=500 -cp benchmarks/target/benchmarks.jar courseenrollment.LoadGenerator [seedRows]
+// Workers enroll and drop through the same Enrollments code as the enrollment panel, against a database
+// on the embedded server, or the one ce.bench.url points at. With seedRows the database is reseeded first.
+public class LoadGenerator {
+    private static final int WORKERS = Integer.getInteger("ce.load.workers", 200);
+    private static final long DURATION_MS = Long.getLong("ce.load.durationMs", 30_000);
+    private static final long THINK_MS = Long.getLong("ce.load.thinkMs", 20);
+    private static final int HOT_COURSES = Integer.getInteger("ce.load.hotCourses", 5);
+    private static final double HOT_SHARE = Double.parseDouble(System.getProperty("ce.load.hotShare", "0.8"));
+    private static final double DROP_SHARE = Double.parseDouble(System.getProperty("ce.load.dropShare", "0.2"));
+    private static final int MAX_RETRIES = Integer.getInteger("ce.load.maxRetries", 3);
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205, ER_LOCK_DEADLOCK = 1213;
+
+    private final AtomicLong enrolled = new AtomicLong(), duplicates = new AtomicLong(), waitlisted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deadlocks = new AtomicLong(), lockTimeouts = new AtomicLong(), retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final Queue<long[]> latencies = new ConcurrentLinkedQueue<>();
+    private final int[] studentIds, courseIds;
+    private final ConnectionPool pool;
+
+    LoadGenerator(ConnectionPool pool, int[] studentIds, int[] courseIds) {
+        this.pool = pool;
+        this.studentIds = studentIds;
+        this.courseIds = courseIds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("ce.bench.url");
+        ConnectionPool pool = url != null
+                ? new ConnectionPool(url, System.getProperty("ce.bench.user", "root"), System.getProperty("ce.bench.password", ""))
+                : new ConnectionPool(EmbeddedMariaDB.url("course_enrollment_load"), EmbeddedMariaDB.USER, EmbeddedMariaDB.PASS);
+        try (Connection conn = pool.getConnection()) {
+            if (args.length > 0) Fixture.seed(conn, Integer.parseInt(args[0]));
+            new LoadGenerator(pool, ids(conn, "students"), ids(conn, "courses")).drive();
+        } finally {
+            pool.close();
+            EmbeddedMariaDB.stop();
+        }
+    }
+
+    private static int[] ids(Connection conn, String table) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM " + table + " ORDER BY id")) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        if (ids.isEmpty()) throw new SQLException("No rows in " + table + "; pass a row count to seed the database");
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    void drive() throws InterruptedException {
+        System.out.printf("%d workers for %ds, think %dms, %.0f%% of requests on %d hot courses, %d students, %d courses%n",
+                WORKERS, DURATION_MS / 1000, THINK_MS, HOT_SHARE * 100, HOT_COURSES, studentIds.length, courseIds.length);
+        ExecutorService workers = newWorkerExecutor();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+        for (int i = 0; i < WORKERS; i++) workers.execute(() -> work(end));
+        workers.shutdown();
+        workers.awaitTermination(DURATION_MS + 60_000, TimeUnit.MILLISECONDS);
+        report(System.nanoTime() - start);
+    }
+
+    private void work(long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Integer> mine = new ArrayList<>(); // enrollments this worker made, candidates for drops
+        long[] samples = new long[256];
+        int n = 0;
+        try {
+            while (System.nanoTime() < end) {
+                long t0 = System.nanoTime();
+                if (!mine.isEmpty() && random.nextDouble() < DROP_SHARE) {
+                    int enrollmentId = mine.remove(random.nextInt(mine.size()));
+                    Integer promoted = withRetry(conn -> Enrollments.unenroll(conn, enrollmentId));
+                    if (promoted != null && promoted >= 0) dropped.incrementAndGet();
+                } else {
+                    int studentId = studentIds[random.nextInt(studentIds.length)];
+                    int courseId = random.nextDouble() < HOT_SHARE
+                            ? courseIds[random.nextInt(Math.min(HOT_COURSES, courseIds.length))]
+                            : courseIds[random.nextInt(courseIds.length)];
+                    Integer id = withRetry(conn -> Enrollments.enroll(conn, studentId, courseId));
+                    if (id != null && id == Enrollments.ALREADY_ENROLLED) {
+                        duplicates.incrementAndGet();
+                    } else if (id != null && id == Enrollments.WAITLISTED) {
+                        waitlisted.incrementAndGet();
+                    } else if (id != null) {
+                        enrolled.incrementAndGet();
+                        mine.add(id);
+                    }
+                }
+                if (n == samples.length) samples = Arrays.copyOf(samples, n * 2);
+                samples[n++] = System.nanoTime() - t0;
+                if (THINK_MS > 0) Thread.sleep(random.nextLong(THINK_MS * 2 + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            latencies.add(Arrays.copyOf(samples, n));
+        }
+    }
+
+    interface Call {
+        int apply(Connection conn) throws SQLException;
+    }
+
+    // Retries deadlocks and lock wait timeouts the way a clerk would press the button again;
+    // returns null when the call finally failed
+    private Integer withRetry(Call call) {
+        for (int attempt = 0; ; attempt++) {
+            try (Connection conn = pool.getConnection()) {
+                return call.apply(conn);
+            } catch (SQLException e) {
+                boolean deadlock = e.getErrorCode() == ER_LOCK_DEADLOCK || "40001".equals(e.getSQLState());
+                boolean timeout = e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT;
+                if (deadlock) deadlocks.incrementAndGet();
+                if (timeout) lockTimeouts.incrementAndGet();
+                if ((!deadlock && !timeout) || attempt >= MAX_RETRIES) {
+                    failures.incrementAndGet();
+                    return null;
+                }
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(5L << attempt, 10L << attempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("requests    %d in %.1fs = %.0f/s%n", all.length, seconds, all.length / seconds);
+        System.out.printf("latency ms  p50=%.2f p99=%.2f p99.9=%.2f max=%.2f%n", pct(all, 50) / 1e3,
+                pct(all, 99) / 1e3, pct(all, 99.9) / 1e3, pct(all, 100) / 1e3);
+        System.out.printf("enrolled    %d, already enrolled (duplicate key) %d, waitlisted %d, dropped %d%n",
+                enrolled.get(), duplicates.get(), waitlisted.get(), dropped.get());
+        System.out.printf("contention  deadlocks=%d lockWaitTimeouts=%d retries=%d failed=%d%n",
+                deadlocks.get(), lockTimeouts.get(), retries.get(), failures.get());
+        System.out.println("pool        " + pool);
+    }
+
+    // Percentile of sorted nanosecond samples, in microseconds
+    static double pct(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e3;
+    }
+
+    // One virtual thread per worker when the runtime has them, platform threads otherwise
+    private static ExecutorService newWorkerExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(WORKERS);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package courseenrollment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// The reads behind loadStudents(), the student search and loadEnrollments(), and the reports panel
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmarks {
+
+    @Benchmark
+    public int studentsFirstPage(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.studentsFirstPage(conn);
+        }
+    }
+
+    @Benchmark
+    public int studentsKeysetPage(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.studentsKeysetPage(conn);
+        }
+    }
+
+    @Benchmark
+    public int studentsCount(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.studentsCount(conn);
+        }
+    }
+
+    @Benchmark
+    public int studentsSearchById(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.searchById(conn);
+        }
+    }
+
+    @Benchmark
+    public int studentsSearchByName(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.searchByName(conn);
+        }
+    }
+
+    @Benchmark
+    public int enrollmentsFirstPage(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.enrollmentsFirstPage(conn);
+        }
+    }
+
+    @Benchmark
+    public int enrollmentsKeysetPage(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.enrollmentsKeysetPage(conn);
+        }
+    }
+
+    @Benchmark
+    public int rosterCount(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.rosterCount(conn);
+        }
+    }
+
+    @Benchmark
+    public int reportsLoad(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.reports(conn);
+        }
+    }
+}
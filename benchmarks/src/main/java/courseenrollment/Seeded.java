@@ -0,0 +1,34 @@
+package courseenrollment;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+// A database of 'rows' enrollments shaped like course_enrollment.sql, one per size on the embedded server
+@State(Scope.Benchmark)
+public class Seeded {
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    String url;
+    Fixture fixture;
+
+    @Setup(Level.Trial)
+    public void seed() throws Exception {
+        url = EmbeddedMariaDB.url("course_enrollment_bench_" + rows);
+        try (Connection conn = DriverManager.getConnection(url, EmbeddedMariaDB.USER, EmbeddedMariaDB.PASS)) {
+            fixture = Fixture.prepare(conn, rows);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        EmbeddedMariaDB.stop();
+    }
+}
@@ -0,0 +1,47 @@
+package courseenrollment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// enrollStudent() and the bulk enrollment, each including the removal of what it added. The two
+// batch benchmarks report per enrollment, so they compare directly with enrollAndDrop.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmarks {
+
+    @Benchmark
+    public int enrollAndDrop(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.enrollAndDrop(conn);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixture.BATCH)
+    public int enrollEachAndDrop(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.enrollEach(conn);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixture.BATCH)
+    public int enrollBatchAndDrop(Seeded db, Connections source) throws SQLException {
+        try (Connection conn = source.get()) {
+            return db.fixture.enrollBatch(conn);
+        }
+    }
+}